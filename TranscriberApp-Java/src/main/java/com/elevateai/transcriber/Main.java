@@ -1,33 +1,88 @@
 package com.elevateai.transcriber;
 
+import com.elevateai.transcriber.cluster.ClusterWorker;
+import com.elevateai.transcriber.cluster.SharedJobDirectory;
 import com.elevateai.transcriber.handler.HomeHandler;
+import com.elevateai.transcriber.handler.JobRegistry;
+import com.elevateai.transcriber.handler.JobsHandler;
 import com.elevateai.transcriber.handler.StaticHandler;
 import com.elevateai.transcriber.handler.TranscribeHandler;
 import com.elevateai.transcriber.handler.UploadHandler;
-import com.sun.net.httpserver.HttpServer;
+import com.elevateai.transcriber.http.Server;
+import com.elevateai.transcriber.http.ServerConfig;
+import com.elevateai.transcriber.service.ElevateAiTranscriber;
+import com.elevateai.transcriber.service.UploadStore;
 
-import java.net.InetSocketAddress;
-import java.util.concurrent.Executors;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
 
 public class Main {
     public static void main(String[] args) throws Exception {
-        int port = 8080;
-        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
-
-        server.createContext("/", new HomeHandler());
-        server.createContext("/upload", new UploadHandler());
-        server.createContext("/transcribe", new TranscribeHandler());
-        server.createContext("/static/", new StaticHandler());
-
-        // Use virtual threads on Java 21+, fall back to cached thread pool
-        try {
-            var method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
-            server.setExecutor((java.util.concurrent.ExecutorService) method.invoke(null));
-        } catch (NoSuchMethodException e) {
-            server.setExecutor(Executors.newCachedThreadPool());
-        }
+        // --startup-check: serve one request on an ephemeral port, report time-to-first-request
+        // and exit. The fast-startup build profile uses it to train and measure the CDS archive.
+        boolean startupCheck = args.length > 0 && args[0].equals("--startup-check");
+        int port = startupCheck ? 0 : 8080;
+        UploadStore store = UploadStore.fromEnvironment();
+
+        // ELEVATEAI_HTTP_SERVER=nio selects the non-blocking front end; ELEVATEAI_HTTP_* variables set
+        // limits (see ServerConfig). Handlers and SSE writers run on virtual threads on Java 21+
+        // (multi-release jar), a cached thread pool on 17.
+        ExecutorService requests = ServerExecutors.newRequestExecutor();
+        Server server = ServerConfig.fromEnvironment(store.quotaBytes()).createServer(port, requests);
+        JobRegistry jobs = new JobRegistry();
+
+        // Cluster mode (ELEVATEAI_CLUSTER_DIR): uploads go to a shared directory and any node claims them
+        SharedJobDirectory cluster = SharedJobDirectory.fromEnvironment(store);
+        ClusterWorker worker = cluster != null ? ClusterWorker.fromEnvironment(cluster) : null;
+
+        StaticHandler staticHandler = new StaticHandler();
+
+        server.createContext("/", new HomeHandler(staticHandler));
+        server.createContext("/upload", new UploadHandler(store, cluster));
+        server.createContext("/transcribe", new TranscribeHandler(store, jobs, cluster, requests));
+        server.createContext("/jobs/", new JobsHandler(jobs, cluster, worker));
+        server.createContext("/static/", staticHandler);
+
         server.start();
 
+        if (startupCheck) {
+            runStartupCheck(server.port());
+            server.stop();
+            System.exit(0);
+        }
+
+        if (worker != null) {
+            worker.start();
+            System.out.println("Cluster mode: node " + worker.nodeId() + " sharing jobs via " + System.getenv("ELEVATEAI_CLUSTER_DIR"));
+        }
+
+        // Optionally prime DNS/TLS for the API host before the first request: ELEVATEAI_WARMUP=true
+        if (Boolean.parseBoolean(System.getenv("ELEVATEAI_WARMUP"))) {
+            ElevateAiTranscriber.warmUp();
+        }
+
         System.out.println("ElevateAI Transcriber running at http://localhost:" + port);
     }
+
+    private static void runStartupCheck(int port) throws Exception {
+        Instant serverReady = Instant.now();
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/").openConnection();
+        int status = conn.getResponseCode();
+        try (InputStream is = conn.getInputStream()) {
+            is.readAllBytes();
+        }
+        Instant firstResponse = Instant.now();
+        if (status != 200) {
+            throw new IllegalStateException("Startup check: GET / returned HTTP " + status);
+        }
+
+        Instant processStart = ProcessHandle.current().info().startInstant().orElse(serverReady);
+        System.out.println("Startup check: server ready in "
+                + Duration.between(processStart, serverReady).toMillis() + " ms, first request served in "
+                + Duration.between(processStart, firstResponse).toMillis() + " ms");
+    }
 }
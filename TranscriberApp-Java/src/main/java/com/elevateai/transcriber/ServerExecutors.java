@@ -0,0 +1,29 @@
+package com.elevateai.transcriber;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Request executor for the HTTP server. This is the Java 17 version; the multi-release jar
+ * carries a Java 21 override in {@code src/main/java21} that calls virtual threads directly, so
+ * startup is direct and native-image sees the call.
+ *
+ * <p>The override is only compiled when the build itself runs on JDK 21+. A jar built on JDK 17
+ * lacks it, so this version still looks up {@code Executors.newVirtualThreadPerTaskExecutor}
+ * and uses it when the runtime has it, falling back to a cached thread pool on Java 17. The
+ * method is registered in {@code reflect-config.json} so a native image keeps the lookup.</p>
+ */
+public final class ServerExecutors {
+    private ServerExecutors() {
+    }
+
+    public static ExecutorService newRequestExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.elevateai.transcriber.cluster;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * AES-GCM key shared by every node ({@code ELEVATEAI_CLUSTER_KEY}, base64 of 16, 24 or 32
+ * bytes) that seals API tokens before they are written to the shared directory. The job id is
+ * bound in as associated data, so a sealed token can't be copied into another job.
+ */
+final class ClusterKey {
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKeySpec key;
+
+    private ClusterKey(byte[] key) {
+        this.key = new SecretKeySpec(key, "AES");
+    }
+
+    /** @return null if {@code base64} is null or blank */
+    static ClusterKey parse(String base64) {
+        if (base64 == null || base64.isBlank()) return null;
+        byte[] key = Base64.getDecoder().decode(base64.trim());
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalArgumentException("ELEVATEAI_CLUSTER_KEY must be 16, 24 or 32 bytes, base64-encoded");
+        }
+        return new ClusterKey(key);
+    }
+
+    byte[] seal(String jobId, String token) throws IOException {
+        byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        try {
+            Cipher cipher = cipher(Cipher.ENCRYPT_MODE, jobId, iv);
+            byte[] sealed = cipher.doFinal(token.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.allocate(IV_LENGTH + sealed.length).put(iv).put(sealed).array();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not encrypt API token", e);
+        }
+    }
+
+    String open(String jobId, byte[] sealed) throws IOException {
+        if (sealed.length <= IV_LENGTH) throw new IOException("Stored API token is truncated");
+        byte[] iv = new byte[IV_LENGTH];
+        System.arraycopy(sealed, 0, iv, 0, IV_LENGTH);
+        try {
+            Cipher cipher = cipher(Cipher.DECRYPT_MODE, jobId, iv);
+            return new String(cipher.doFinal(sealed, IV_LENGTH, sealed.length - IV_LENGTH), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not decrypt API token; is ELEVATEAI_CLUSTER_KEY the same on every node?", e);
+        }
+    }
+
+    private Cipher cipher(int mode, String jobId, byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(jobId.getBytes(StandardCharsets.UTF_8));
+        return cipher;
+    }
+}
@@ -0,0 +1,194 @@
+package com.elevateai.transcriber.cluster;
+
+import com.elevateai.transcriber.handler.TranscriptPayload;
+import com.elevateai.transcriber.service.CancellationToken;
+import com.elevateai.transcriber.service.ElevateAiTranscriber;
+import com.elevateai.transcriber.service.TranscriptionResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claims jobs from a {@link SharedJobDirectory} and runs them on this node, up to a fixed
+ * number of concurrent slots. While a job runs its lease is heartbeated; if the lease is lost
+ * (this node stalled past the TTL and another node stole it), a cancel marker appears or no
+ * node has streamed the job's events for a lease TTL, the local run is cancelled.
+ *
+ * <p>Configuration: {@code ELEVATEAI_NODE_ID} (default host name + pid) and
+ * {@code ELEVATEAI_CLUSTER_SLOTS} (default: available processors).</p>
+ */
+public class ClusterWorker implements Closeable {
+    private static final long SCAN_MILLIS = 1000;
+    private static final Duration FINISHED_RETENTION = Duration.ofMinutes(10);
+
+    private final SharedJobDirectory jobs;
+    private final String nodeId;
+    private final Semaphore slots;
+    private final long heartbeatMillis;
+    private final Map<String, RunningJob> running = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemon("cluster-scheduler"));
+    private final ExecutorService runners = Executors.newCachedThreadPool(daemon("cluster-job"));
+
+    private static final class RunningJob {
+        final SharedJobDirectory.Lease lease;
+        final CancellationToken cancel = new CancellationToken();
+        volatile boolean leaseLost;
+        long lastHeartbeat = System.currentTimeMillis();
+
+        RunningJob(SharedJobDirectory.Lease lease) {
+            this.lease = lease;
+        }
+    }
+
+    public ClusterWorker(SharedJobDirectory jobs, String nodeId, int slots) {
+        this.jobs = jobs;
+        this.nodeId = nodeId;
+        this.slots = new Semaphore(slots);
+        this.heartbeatMillis = Math.max(1000, jobs.leaseTtl().toMillis() / 3);
+    }
+
+    public static ClusterWorker fromEnvironment(SharedJobDirectory jobs) throws IOException {
+        String nodeId = System.getenv("ELEVATEAI_NODE_ID");
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = InetAddress.getLocalHost().getHostName() + "-" + ProcessHandle.current().pid();
+        }
+        int slots = Integer.parseInt(System.getenv().getOrDefault("ELEVATEAI_CLUSTER_SLOTS",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        return new ClusterWorker(jobs, nodeId, slots);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(() -> guard(this::claimJobs), 0, SCAN_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> guard(this::checkRunningJobs), SCAN_MILLIS, SCAN_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> guard(() -> jobs.cleanup(FINISHED_RETENTION, nodeId)),
+                1, 1, TimeUnit.MINUTES);
+    }
+
+    /** Cancel a job if it is running on this node, without waiting for the marker to be noticed. */
+    public boolean cancelLocal(String jobId) {
+        RunningJob job = running.get(jobId);
+        if (job == null) return false;
+        job.cancel.cancel();
+        return true;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        running.values().forEach(job -> job.cancel.cancel());
+        runners.shutdown();
+    }
+
+    private void claimJobs() throws IOException {
+        if (slots.availablePermits() == 0) return;
+        for (String jobId : jobs.findClaimable()) {
+            if (running.containsKey(jobId)) continue;
+            if (!slots.tryAcquire()) return;
+            SharedJobDirectory.Lease lease = jobs.tryClaim(jobId, nodeId);
+            if (lease == null) {
+                slots.release();
+                continue;
+            }
+            RunningJob job = new RunningJob(lease);
+            running.put(jobId, job);
+            runners.execute(() -> run(jobId, job));
+        }
+    }
+
+    private void checkRunningJobs() {
+        long now = System.currentTimeMillis();
+        running.forEach((jobId, job) -> {
+            // Closing the browser tab ends every stream; a reconnect to any node resumes watching
+            if (jobs.isCancelRequested(jobId) || jobs.isUnwatched(jobId)) {
+                job.cancel.cancel();
+            }
+            if (now - job.lastHeartbeat >= heartbeatMillis) {
+                job.lastHeartbeat = now;
+                if (!jobs.heartbeat(job.lease)) {
+                    job.leaseLost = true;
+                    job.cancel.cancel();
+                }
+            }
+        });
+    }
+
+    private void run(String jobId, RunningJob job) {
+        boolean failed = false;
+        try {
+            JobRequest request = jobs.readRequest(jobId);
+            String token = jobs.takeToken(jobId);
+            append(jobId, null, "Job claimed by node " + nodeId + ".");
+            TranscriptionResult result = ElevateAiTranscriber.transcribeFile(token,
+                    jobs.audioFile(jobId).toString(),
+                    msg -> append(jobId, null, msg),
+                    request.toOptions(job.cancel));
+            append(jobId, "transcript", TranscriptPayload.toJson(result));
+            append(jobId, "done", "complete");
+        } catch (CancellationException e) {
+            if (!job.leaseLost) {
+                append(jobId, null, "Transcription cancelled.");
+                append(jobId, "done", "cancelled");
+            }
+        } catch (Exception e) {
+            failed = true;
+            if (!job.leaseLost) {
+                append(jobId, null, "ERROR: " + e.getMessage());
+                append(jobId, "done", "error");
+            }
+        } finally {
+            // A lost lease means another node has restarted the job and now owns its files
+            if (!job.leaseLost) {
+                // Like the local upload store, keep the audio of a failed run for a retry
+                boolean keepAudio = failed;
+                guard(() -> jobs.finish(jobId, keepAudio));
+            }
+            running.remove(jobId);
+            slots.release();
+        }
+    }
+
+    private void append(String jobId, String event, String data) {
+        try {
+            jobs.append(jobId, new JobEvent(event, data));
+        } catch (IOException e) {
+            System.err.println("Cluster: failed to append event for job " + jobId + ": " + e.getMessage());
+        }
+    }
+
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    private static void guard(IoAction action) {
+        try {
+            action.run();
+        } catch (IOException | RuntimeException e) {
+            // Keep the scheduled task alive; the next tick retries
+            System.err.println("Cluster: " + e);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
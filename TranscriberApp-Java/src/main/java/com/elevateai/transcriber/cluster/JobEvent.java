@@ -0,0 +1,13 @@
+package com.elevateai.transcriber.cluster;
+
+/**
+ * One SSE event produced by the node running a job, as stored in the job's {@code events.log}.
+ *
+ * @param event SSE event name, or {@code null} for a plain progress message
+ */
+public record JobEvent(String event, String data) {
+
+    public boolean isDone() {
+        return "done".equals(event);
+    }
+}
@@ -0,0 +1,52 @@
+package com.elevateai.transcriber.cluster;
+
+import com.elevateai.transcriber.service.AudioCodec;
+import com.elevateai.transcriber.service.CancellationToken;
+import com.elevateai.transcriber.service.SilenceTrimmer;
+import com.elevateai.transcriber.service.TranscriptionOptions;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * What a node needs to run a queued job besides the API token: the serializable part of
+ * {@link TranscriptionOptions}. Stored as {@code request.json} in the job directory; the token
+ * itself is kept apart (see {@link SharedJobDirectory}).
+ *
+ * @param tokenSha256 hash of the submitting token, so a stream for the job can be reopened on
+ *                    any node by the same caller
+ * @param codec       {@code null} in requests written before codecs were configurable; read as PCM
+ */
+record JobRequest(String tokenSha256, String languageTag, int sampleRate,
+                  SilenceTrimmer.Options silenceTrim, AudioCodec codec) {
+
+    static JobRequest of(String token, TranscriptionOptions options) {
+        return new JobRequest(sha256(token), options.getLanguageTag(), options.getSampleRate(),
+                options.getSilenceTrim(), options.getCodec());
+    }
+
+    boolean isSubmittedWith(String token) {
+        return tokenSha256 != null && MessageDigest.isEqual(
+                tokenSha256.getBytes(StandardCharsets.US_ASCII), sha256(token).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    TranscriptionOptions toOptions(CancellationToken cancellation) {
+        return new TranscriptionOptions()
+                .languageTag(languageTag)
+                .sampleRate(sampleRate)
+                .silenceTrim(silenceTrim)
+                .codec(codec != null ? codec : AudioCodec.PCM)
+                .cancellation(cancellation);
+    }
+
+    private static String sha256(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,602 @@
+package com.elevateai.transcriber.cluster;
+
+import com.elevateai.transcriber.service.TranscriptionOptions;
+import com.elevateai.transcriber.service.UploadStore;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Job queue shared by every node through a common directory (e.g. an NFS or EFS mount), with
+ * no external broker. Each job is a directory under {@code jobs/}:
+ *
+ * <pre>
+ * jobs/&lt;fileId&gt;/
+ *   audio&lt;ext&gt;   uploaded file, written by whichever node received the upload
+ *   request.json  options and a hash of the caller's token; its presence makes the job claimable
+ *   token         the caller's API token, owner-only (0600)
+ *   lease.&lt;n&gt;     lease generation n, holding the owning node id; its mtime is the heartbeat
+ *   events.log    one JSON {@link JobEvent} per line, appended by the owner, tailed by SSE nodes
+ *   watched       touched while any node streams the events; stale means nobody is watching
+ *   cancel        marker asking the owner to stop
+ *   done          marker written after the final event
+ * </pre>
+ *
+ * <p>A job that failed keeps its audio until the upload TTL, and submitting it again starts
+ * it over with a fresh event log, so a retry (with a corrected token, say) needs no new
+ * upload. Completed and cancelled jobs lose their audio and can only be streamed again.</p>
+ *
+ * <p>With {@code ELEVATEAI_CLUSTER_KEY} set, the token is AES-GCM encrypted and kept until the
+ * job finishes, so a node that steals an expired lease can still run the job. Without it the
+ * plaintext token is deleted as soon as a node claims the job; a steal after that ends the job
+ * with an error.</p>
+ *
+ * <p>Claiming relies on exclusive file creation: the owner is whoever created the newest lease
+ * generation, and a steal creates the next one, so it never disturbs a live lease. Uploads
+ * share the quota and TTL configured for {@link UploadStore}.</p>
+ */
+public class SharedJobDirectory {
+    private static final String AUDIO = "audio";
+    private static final String REQUEST = "request.json";
+    private static final String TOKEN = "token";
+    private static final String LEASE = "lease";
+    private static final String EVENTS = "events.log";
+    private static final String WATCHED = "watched";
+    private static final String CANCEL = "cancel";
+    private static final String DONE = "done";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    // Usage is re-read from the directory at each step, since other nodes upload concurrently
+    private static final long QUOTA_CHECK_STEP = 4L * 1024 * 1024;
+
+    private final Path jobsDir;
+    private final Duration leaseTtl;
+    private final long quotaBytes;
+    private final Duration uploadTtl;
+    private final ClusterKey key;
+
+    SharedJobDirectory(Path root, Duration leaseTtl, long quotaBytes, Duration uploadTtl, ClusterKey key) throws IOException {
+        this.jobsDir = root.resolve("jobs");
+        this.leaseTtl = leaseTtl;
+        this.quotaBytes = quotaBytes;
+        this.uploadTtl = uploadTtl;
+        this.key = key;
+        Files.createDirectories(jobsDir);
+    }
+
+    /**
+     * Cluster mode is on when {@code ELEVATEAI_CLUSTER_DIR} is set; returns null otherwise.
+     * Upload quota and TTL are taken from {@code uploads}.
+     */
+    public static SharedJobDirectory fromEnvironment(UploadStore uploads) throws IOException {
+        String dir = System.getenv("ELEVATEAI_CLUSTER_DIR");
+        if (dir == null || dir.isBlank()) return null;
+        long leaseSeconds = Long.parseLong(System.getenv().getOrDefault("ELEVATEAI_LEASE_SECONDS", "30"));
+        return new SharedJobDirectory(Path.of(dir), Duration.ofSeconds(leaseSeconds),
+                uploads.quotaBytes(), uploads.ttl(), ClusterKey.parse(System.getenv("ELEVATEAI_CLUSTER_KEY")));
+    }
+
+    Duration leaseTtl() {
+        return leaseTtl;
+    }
+
+    /** Lease generation {@code generation} of a job, held by this node. */
+    record Lease(String jobId, long generation) {
+    }
+
+    // --- Submitting side (any node) ---
+
+    /**
+     * Store an upload, streamed from {@code in}, as a new, not yet requested job.
+     *
+     * @throws IOException if the upload quota is exceeded, or reading or writing fails
+     */
+    public String createJob(InputStream in, String extension) throws IOException {
+        String jobId = UploadStore.newFileId(extension);
+        Path dir = jobsDir.resolve(jobId);
+        Files.createDirectory(dir);
+        Path audio = dir.resolve(audioName(jobId));
+        Path partial = dir.resolve(audioName(jobId) + ".part");
+        try {
+            try (OutputStream os = Files.newOutputStream(partial)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                long written = 0;
+                long checkedUpTo = 0;
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    if (written + n > checkedUpTo) {
+                        if (usedBytes() + QUOTA_CHECK_STEP > quotaBytes) {
+                            throw new IOException("Upload store quota exceeded (" + quotaBytes / (1024 * 1024) + " MB)");
+                        }
+                        checkedUpTo = written + QUOTA_CHECK_STEP;
+                    }
+                    os.write(buffer, 0, n);
+                    written += n;
+                }
+            }
+            Files.move(partial, audio, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteRecursively(dir);
+            throw e;
+        }
+        return jobId;
+    }
+
+    public enum SubmitResult { SUBMITTED, UNKNOWN_JOB, ALREADY_SUBMITTED }
+
+    /**
+     * Make an uploaded job claimable by any node. A failed job whose audio is still there is
+     * reset and queued again.
+     */
+    public SubmitResult submit(String jobId, String token, TranscriptionOptions options) throws IOException {
+        if (!UploadStore.isValidFileId(jobId) || !Files.isDirectory(jobsDir.resolve(jobId))) {
+            return SubmitResult.UNKNOWN_JOB;
+        }
+        Path dir = jobsDir.resolve(jobId);
+        boolean retry = isRetryable(dir, jobId);
+        if (Files.exists(dir.resolve(REQUEST)) && !retry) return SubmitResult.ALREADY_SUBMITTED;
+        Path partial = dir.resolve(REQUEST + ".part");
+        try {
+            // Exclusive create doubles as the "only one /transcribe per upload" check
+            Files.write(partial, Json.GSON.toJson(JobRequest.of(token, options)).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (FileAlreadyExistsException e) {
+            return SubmitResult.ALREADY_SUBMITTED;
+        }
+        try {
+            if (retry) reset(dir);
+            // Everything a worker needs is in place before request.json makes the job claimable
+            writeToken(dir, jobId, token);
+            touch(dir.resolve(WATCHED));
+            Files.move(partial, dir.resolve(REQUEST), StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            return SubmitResult.ALREADY_SUBMITTED;
+        } catch (IOException e) {
+            Files.deleteIfExists(dir.resolve(TOKEN));
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        return SubmitResult.SUBMITTED;
+    }
+
+    /**
+     * Whether the job was submitted with {@code token}, so the caller may reopen its event
+     * stream on this node.
+     */
+    public boolean isSubmittedWith(String jobId, String token) throws IOException {
+        if (!UploadStore.isValidFileId(jobId)) return false;
+        try {
+            return readRequest(jobId).isSubmittedWith(token);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /** Ask the owning node to stop. Returns false if there is no unfinished job with this id. */
+    public boolean requestCancel(String jobId) throws IOException {
+        if (!UploadStore.isValidFileId(jobId)) return false;
+        Path dir = jobsDir.resolve(jobId);
+        if (!Files.isDirectory(dir) || Files.exists(dir.resolve(DONE))) return false;
+        try {
+            Files.createFile(dir.resolve(CANCEL));
+        } catch (FileAlreadyExistsException ignored) {
+            // Already requested
+        }
+        return true;
+    }
+
+    /**
+     * Read the job's events, skipping the first {@code afterId} (an SSE {@code Last-Event-ID}).
+     * While the tail is polled it marks the job as watched.
+     */
+    public EventTail tail(String jobId, long afterId) {
+        return new EventTail(jobsDir.resolve(jobId), afterId, leaseTtl.toMillis() / 3);
+    }
+
+    // --- Worker side ---
+
+    /** Jobs that have been requested, are not finished and whose lease is missing or expired. */
+    List<String> findClaimable() throws IOException {
+        List<String> claimable = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(jobsDir)) {
+            for (Path dir : dirs) {
+                if (!Files.exists(dir.resolve(REQUEST)) || Files.exists(dir.resolve(DONE))) continue;
+                try {
+                    if (hasLiveLease(dir)) continue;
+                } catch (NoSuchFileException e) {
+                    continue; // finished or cleaned up meanwhile
+                }
+                claimable.add(dir.getFileName().toString());
+            }
+        }
+        return claimable;
+    }
+
+    /**
+     * Take the job's lease by creating the next lease generation, which steals it if the
+     * current one has expired. Two nodes racing for the same generation are settled by
+     * exclusive creation, and an older generation can never be taken back.
+     *
+     * @return the lease, or {@code null} if another node owns the job
+     */
+    Lease tryClaim(String jobId, String nodeId) throws IOException {
+        Path dir = jobsDir.resolve(jobId);
+        Path current = newestLease(dir);
+        long next = 0;
+        if (current != null) {
+            try {
+                if (Files.getLastModifiedTime(current).toMillis() >= System.currentTimeMillis() - leaseTtl.toMillis()) {
+                    return null;
+                }
+            } catch (NoSuchFileException e) {
+                return null; // finished meanwhile
+            }
+            next = generation(current) + 1;
+        }
+        Path lease = dir.resolve(LEASE + "." + next);
+        try {
+            Files.write(lease, nodeId.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (FileAlreadyExistsException e) {
+            return null;
+        }
+        // A stale listing may have hidden a newer generation, and the owner may have finished
+        // the job after our first look; either way the job isn't ours
+        if (!lease.equals(newestLease(dir)) || Files.exists(dir.resolve(DONE))) {
+            Files.deleteIfExists(lease);
+            return null;
+        }
+        return new Lease(jobId, next);
+    }
+
+    /**
+     * Refresh the lease's heartbeat.
+     *
+     * @return false if the lease was lost (stolen after expiring), in which case the job must stop
+     */
+    boolean heartbeat(Lease lease) {
+        Path dir = jobsDir.resolve(lease.jobId());
+        Path mine = dir.resolve(LEASE + "." + lease.generation());
+        try {
+            if (!mine.equals(newestLease(dir))) return false;
+            Files.setLastModifiedTime(mine, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    boolean isCancelRequested(String jobId) {
+        return Files.exists(jobsDir.resolve(jobId).resolve(CANCEL));
+    }
+
+    /** Whether no node has streamed the job's events for longer than the lease TTL. */
+    boolean isUnwatched(String jobId) {
+        try {
+            Path watched = jobsDir.resolve(jobId).resolve(WATCHED);
+            return Files.getLastModifiedTime(watched).toMillis() < System.currentTimeMillis() - leaseTtl.toMillis();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    JobRequest readRequest(String jobId) throws IOException {
+        return Json.GSON.fromJson(Files.readString(jobsDir.resolve(jobId).resolve(REQUEST)), JobRequest.class);
+    }
+
+    /**
+     * Read the API token for a claimed job. Without a cluster key the plaintext file is deleted
+     * right away, so it sits on the shared mount only while the job is queued.
+     */
+    String takeToken(String jobId) throws IOException {
+        Path file = jobsDir.resolve(jobId).resolve(TOKEN);
+        byte[] stored;
+        try {
+            stored = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            throw new IOException("The API token for this job is no longer available: the node that first"
+                    + " ran it stopped, and without ELEVATEAI_CLUSTER_KEY tokens are not kept on the shared"
+                    + " directory. Upload the file again.");
+        }
+        if (key != null) return key.open(jobId, stored);
+        Files.deleteIfExists(file);
+        return new String(stored, StandardCharsets.UTF_8);
+    }
+
+    Path audioFile(String jobId) throws IOException {
+        Path audio = jobsDir.resolve(jobId).resolve(audioName(jobId));
+        if (!Files.exists(audio)) throw new NoSuchFileException(audio.toString());
+        return audio;
+    }
+
+    /**
+     * Append one event. Each append opens and closes the log so other nodes see it under NFS
+     * close-to-open consistency.
+     */
+    synchronized void append(String jobId, JobEvent event) throws IOException {
+        byte[] line = (Json.GSON.toJson(event) + "\n").getBytes(StandardCharsets.UTF_8);
+        Files.write(jobsDir.resolve(jobId).resolve(EVENTS), line,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Mark the job finished, drop the token and release the lease. The audio is deleted too
+     * unless {@code keepAudio}, which lets a failed job be submitted again.
+     */
+    void finish(String jobId, boolean keepAudio) throws IOException {
+        Path dir = jobsDir.resolve(jobId);
+        if (!keepAudio) Files.deleteIfExists(dir.resolve(audioName(jobId)));
+        Files.deleteIfExists(dir.resolve(TOKEN));
+        try {
+            Files.createFile(dir.resolve(DONE));
+        } catch (FileAlreadyExistsException ignored) {
+            // Finished by a previous owner that lost its lease late
+        }
+        try (DirectoryStream<Path> leases = Files.newDirectoryStream(dir, LEASE + ".*")) {
+            for (Path lease : leases) {
+                Files.deleteIfExists(lease);
+            }
+        }
+    }
+
+    /**
+     * Delete finished jobs once SSE readers have had time to drain them (failed jobs, which
+     * keep their audio for a retry, once they reach the upload TTL) and uploads that were never
+     * requested once they reach the upload TTL. Requested jobs that no node has picked up
+     * within the TTL are ended with an error, which also removes their token.
+     */
+    void cleanup(Duration finishedRetention, String nodeId) throws IOException {
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(jobsDir)) {
+            for (Path dir : dirs) {
+                try {
+                    Path done = dir.resolve(DONE);
+                    Path request = dir.resolve(REQUEST);
+                    if (Files.exists(done)) {
+                        Duration retention = Files.exists(dir.resolve(audioName(dir.getFileName().toString())))
+                                ? uploadTtl : finishedRetention;
+                        if (Files.getLastModifiedTime(done).toMillis() < now - retention.toMillis()) {
+                            deleteRecursively(dir);
+                        }
+                    } else if (!Files.exists(request)) {
+                        if (Files.getLastModifiedTime(dir).toMillis() < now - uploadTtl.toMillis()) {
+                            deleteRecursively(dir);
+                        }
+                    } else if (Files.getLastModifiedTime(request).toMillis() < now - uploadTtl.toMillis()
+                            && !hasLiveLease(dir)) {
+                        expire(dir.getFileName().toString(), nodeId);
+                    }
+                } catch (IOException ignored) {
+                    // Another node is cleaning up the same directory
+                }
+            }
+        }
+    }
+
+    private void expire(String jobId, String nodeId) throws IOException {
+        // Claiming first makes sure only one node writes the error
+        if (tryClaim(jobId, nodeId) == null) return;
+        append(jobId, new JobEvent(null, "ERROR: No node picked up the job within "
+                + uploadTtl.toMinutes() + " minutes."));
+        append(jobId, new JobEvent("done", "error"));
+        finish(jobId, false);
+    }
+
+    private static boolean isRetryable(Path dir, String jobId) {
+        return Files.exists(dir.resolve(DONE)) && Files.exists(dir.resolve(audioName(jobId)));
+    }
+
+    /**
+     * Clear a failed run's state ahead of a new request. The caller holds the request partial,
+     * so no other node resets the job at the same time; done goes last so the job never looks
+     * both unfinished and requested with the old events.
+     */
+    private static void reset(Path dir) throws IOException {
+        Files.deleteIfExists(dir.resolve(REQUEST));
+        Files.deleteIfExists(dir.resolve(EVENTS));
+        Files.deleteIfExists(dir.resolve(CANCEL));
+        Files.deleteIfExists(dir.resolve(TOKEN));
+        try (DirectoryStream<Path> leases = Files.newDirectoryStream(dir, LEASE + ".*")) {
+            for (Path lease : leases) {
+                Files.deleteIfExists(lease);
+            }
+        }
+        Files.deleteIfExists(dir.resolve(DONE));
+    }
+
+    private static String audioName(String jobId) {
+        return AUDIO + (jobId.length() > 36 ? jobId.substring(36) : "");
+    }
+
+    private boolean hasLiveLease(Path dir) throws IOException {
+        Path lease = newestLease(dir);
+        return lease != null
+                && Files.getLastModifiedTime(lease).toMillis() >= System.currentTimeMillis() - leaseTtl.toMillis();
+    }
+
+    /** The highest lease generation of a job, or {@code null} if it has never been claimed. */
+    private static Path newestLease(Path dir) throws IOException {
+        Path newest = null;
+        long newestGeneration = -1;
+        try (DirectoryStream<Path> leases = Files.newDirectoryStream(dir, LEASE + ".*")) {
+            for (Path lease : leases) {
+                long generation = generation(lease);
+                if (generation > newestGeneration) {
+                    newest = lease;
+                    newestGeneration = generation;
+                }
+            }
+        }
+        return newest;
+    }
+
+    private static long generation(Path lease) {
+        try {
+            return Long.parseLong(lease.getFileName().toString().substring(LEASE.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void writeToken(Path dir, String jobId, String token) throws IOException {
+        byte[] stored = key != null ? key.seal(jobId, token) : token.getBytes(StandardCharsets.UTF_8);
+        FileAttribute<?>[] ownerOnly = dir.getFileSystem().supportedFileAttributeViews().contains("posix")
+                ? new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))}
+                : new FileAttribute<?>[0];
+        try (SeekableByteChannel channel = Files.newByteChannel(dir.resolve(TOKEN),
+                Set.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), ownerOnly)) {
+            ByteBuffer data = ByteBuffer.wrap(stored);
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
+    /** Bytes of audio stored across all jobs, including uploads still in progress. */
+    private long usedBytes() throws IOException {
+        long total = 0;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(jobsDir)) {
+            for (Path dir : dirs) {
+                try (DirectoryStream<Path> audio = Files.newDirectoryStream(dir, AUDIO + "*")) {
+                    for (Path file : audio) {
+                        total += Files.size(file);
+                    }
+                } catch (IOException ignored) {
+                    // Deleted while we were counting
+                }
+            }
+        }
+        return total;
+    }
+
+    private static void touch(Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            try {
+                Files.createFile(file);
+            } catch (FileAlreadyExistsException ignored) {
+                // Created by another node just now
+            }
+        }
+    }
+
+    // Holder so Gson is only built once cluster mode actually moves a job, not when
+    // fromEnvironment() is checked at startup
+    private static final class Json {
+        static final Gson GSON = new Gson();
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /**
+     * Incremental reader over a job's {@code events.log}. {@link #poll()} returns the events
+     * appended since the previous call; a trailing partial line is held back until complete.
+     * Event ids are line numbers, so they are the same whichever node serves the stream.
+     */
+    public static final class EventTail implements Closeable {
+        private final Path dir;
+        private final long skip;
+        private final long touchMillis;
+        private long lastTouch;
+        private FileChannel channel;
+        private long position;
+        private long lines;
+        private boolean finished;
+        private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+
+        /** An event and its position in the log (1 for the first line). */
+        public record Entry(long id, JobEvent event) {
+        }
+
+        EventTail(Path dir, long skip, long touchMillis) {
+            this.dir = dir;
+            this.skip = skip;
+            this.touchMillis = touchMillis;
+        }
+
+        public List<Entry> poll() throws IOException {
+            long now = System.currentTimeMillis();
+            if (now - lastTouch >= touchMillis) {
+                touch(dir.resolve(WATCHED));
+                lastTouch = now;
+            }
+            List<Entry> events = new ArrayList<>();
+            // The done marker follows the last append, so once it is seen a read to the end has everything
+            boolean doneBeforeRead = Files.exists(dir.resolve(DONE));
+            if (channel == null) {
+                Path log = dir.resolve(EVENTS);
+                if (!Files.exists(log)) {
+                    finished = doneBeforeRead;
+                    return events;
+                }
+                channel = FileChannel.open(log, StandardOpenOption.READ);
+            }
+            int n;
+            while ((n = channel.read(buffer, position)) > 0) {
+                position += n;
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b != '\n') {
+                        partial.write(b);
+                        continue;
+                    }
+                    String line = partial.toString(StandardCharsets.UTF_8);
+                    partial.reset();
+                    if (++lines <= skip || line.isBlank()) continue;
+                    try {
+                        events.add(new Entry(lines, Json.GSON.fromJson(line, JobEvent.class)));
+                    } catch (JsonParseException e) {
+                        // Only a node that kept running after losing its lease can garble a line
+                        System.err.println("Cluster: skipping unreadable line " + lines + " of " + dir.resolve(EVENTS));
+                    }
+                }
+                buffer.clear();
+            }
+            finished = doneBeforeRead;
+            return events;
+        }
+
+        /** Whether the job had finished before the last {@link #poll()}, which returned its final events. */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) channel.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.elevateai.transcriber.handler;
+
+import com.elevateai.transcriber.http.Exchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A response body built once and served many times: identity, gzip and deflate variants are
+ * precomputed, each with a strong ETag, so a repeat request costs one header comparison
+ * ({@code 304 Not Modified}) or a single write of ready-made bytes.
+ */
+final class CachedResponse {
+    static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    static final String REVALIDATE = "no-cache";
+
+    private final String contentType;
+    private final String etag;
+    private final byte[] identity;
+    private final byte[] gzip;
+    private final byte[] deflate;
+
+    private CachedResponse(String contentType, String etag, byte[] identity, byte[] gzip, byte[] deflate) {
+        this.contentType = contentType;
+        this.etag = etag;
+        this.identity = identity;
+        this.gzip = gzip;
+        this.deflate = deflate;
+    }
+
+    static CachedResponse of(byte[] body, String contentType) {
+        byte[] gzip = compress(body, true);
+        byte[] deflate = compress(body, false);
+        // Compressed variants are only kept when they actually save bytes
+        return new CachedResponse(contentType, hash(body), body,
+                gzip.length < body.length ? gzip : null,
+                deflate.length < body.length ? deflate : null);
+    }
+
+    /** Short content hash, also used as a cache-busting version in URLs. */
+    String version() {
+        return etag;
+    }
+
+    void send(Exchange exchange, String cacheControl) throws IOException {
+        String acceptEncoding = exchange.requestHeader("Accept-Encoding");
+        byte[] body = identity;
+        String encoding = null;
+        if (gzip != null && accepts(acceptEncoding, "gzip")) {
+            body = gzip;
+            encoding = "gzip";
+        } else if (deflate != null && accepts(acceptEncoding, "deflate")) {
+            body = deflate;
+            encoding = "deflate";
+        }
+        String variantTag = "\"" + etag + (encoding != null ? "-" + encoding : "") + "\"";
+
+        exchange.setResponseHeader("ETag", variantTag);
+        exchange.setResponseHeader("Cache-Control", cacheControl);
+        exchange.setResponseHeader("Vary", "Accept-Encoding");
+
+        if (matches(exchange.requestHeader("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        exchange.setResponseHeader("Content-Type", contentType);
+        if (encoding != null) exchange.setResponseHeader("Content-Encoding", encoding);
+        if ("HEAD".equalsIgnoreCase(exchange.method())) {
+            exchange.setResponseHeader("Content-Length", String.valueOf(body.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.responseBody()) {
+            os.write(body);
+        }
+    }
+
+    /** Any variant's tag matches; they all describe the same content. */
+    private boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String t = tag.trim();
+            if (t.equals("*")) return true;
+            if (t.startsWith("W/")) t = t.substring(2);
+            if (t.equals("\"" + etag + "\"") || t.startsWith("\"" + etag + "-")) return true;
+        }
+        return false;
+    }
+
+    private static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            if (!params[0].trim().equalsIgnoreCase(coding)) continue;
+            for (int i = 1; i < params.length; i++) {
+                String p = params[i].trim();
+                if (p.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(p.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static byte[] compress(byte[] data, boolean gzip) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        try (OutputStream os = gzip ? new GZIPOutputStream(out)
+                : new DeflaterOutputStream(out, new Deflater(Deflater.BEST_COMPRESSION))) {
+            os.write(data);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory compression failed", e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String hash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
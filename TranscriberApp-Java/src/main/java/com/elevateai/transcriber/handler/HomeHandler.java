@@ -1,45 +1,54 @@
 package com.elevateai.transcriber.handler;
 
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
+import com.elevateai.transcriber.http.Exchange;
+import com.elevateai.transcriber.http.Handler;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 
-public class HomeHandler implements HttpHandler {
-    private final TemplateEngine templateEngine;
+public class HomeHandler implements Handler {
+    private final StaticHandler staticHandler;
 
-    public HomeHandler() {
-        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
-        resolver.setPrefix("templates/");
-        resolver.setSuffix(".html");
-        resolver.setTemplateMode(org.thymeleaf.templatemode.TemplateMode.HTML);
-        resolver.setCharacterEncoding("UTF-8");
+    // The page has no per-request data, so it is rendered once on first hit and reused.
+    // The template engine is only built for that render, keeping Thymeleaf off the startup path.
+    private volatile CachedResponse page;
 
-        templateEngine = new TemplateEngine();
-        templateEngine.setTemplateResolver(resolver);
+    public HomeHandler(StaticHandler staticHandler) {
+        this.staticHandler = staticHandler;
     }
 
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        if (!exchange.getRequestURI().getPath().equals("/")) {
+    public void handle(Exchange exchange) throws IOException {
+        if (!exchange.path().equals("/")) {
             exchange.sendResponseHeaders(404, -1);
             exchange.close();
             return;
         }
 
+        CachedResponse response = page;
+        if (response == null) {
+            response = render();
+            page = response;
+        }
+        response.send(exchange, CachedResponse.REVALIDATE);
+    }
+
+    private CachedResponse render() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(org.thymeleaf.templatemode.TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+
+        TemplateEngine templateEngine = new TemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+
         Context ctx = new Context();
+        ctx.setVariable("cssVersion", staticHandler.version("/static/app.css"));
         String html = templateEngine.process("home", ctx);
-        byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
-
-        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
-        exchange.sendResponseHeaders(200, bytes.length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(bytes);
-        }
+        return CachedResponse.of(html.getBytes(StandardCharsets.UTF_8), "text/html; charset=UTF-8");
     }
 }
@@ -0,0 +1,36 @@
+package com.elevateai.transcriber.handler;
+
+import com.elevateai.transcriber.service.CancellationToken;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Running transcriptions on this node, keyed by job id (the upload's fileId), so they can be
+ * cancelled from another request.
+ */
+public class JobRegistry {
+    private final Map<String, CancellationToken> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Register a new job.
+     *
+     * @return the job's cancellation token, or {@code null} if the job is already running
+     */
+    CancellationToken start(String jobId) {
+        CancellationToken token = new CancellationToken();
+        return jobs.putIfAbsent(jobId, token) == null ? token : null;
+    }
+
+    void finish(String jobId, CancellationToken token) {
+        jobs.remove(jobId, token);
+    }
+
+    /** @return true if a running job was found and cancelled */
+    boolean cancel(String jobId) {
+        CancellationToken token = jobs.get(jobId);
+        if (token == null) return false;
+        token.cancel();
+        return true;
+    }
+}
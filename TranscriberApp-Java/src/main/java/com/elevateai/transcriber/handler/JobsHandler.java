@@ -0,0 +1,62 @@
+package com.elevateai.transcriber.handler;
+
+import com.elevateai.transcriber.cluster.ClusterWorker;
+import com.elevateai.transcriber.cluster.SharedJobDirectory;
+import com.elevateai.transcriber.http.Exchange;
+import com.elevateai.transcriber.http.Handler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code DELETE /jobs/{id}}: cancel a running transcription. The ffmpeg processes are killed,
+ * the upstream WebSockets aborted and the uploaded file removed. In cluster mode this works
+ * from any node: a cancel marker is left for whichever node owns the job.
+ */
+public class JobsHandler implements Handler {
+    private final JobRegistry jobs;
+    private final SharedJobDirectory cluster;
+    private final ClusterWorker worker;
+
+    /** {@code cluster} and {@code worker} are {@code null} unless cluster mode is on. */
+    public JobsHandler(JobRegistry jobs, SharedJobDirectory cluster, ClusterWorker worker) {
+        this.jobs = jobs;
+        this.cluster = cluster;
+        this.worker = worker;
+    }
+
+    @Override
+    public void handle(Exchange exchange) throws IOException {
+        if (!"DELETE".equalsIgnoreCase(exchange.method())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+
+        String jobId = exchange.path().substring("/jobs/".length());
+        if (jobId.isEmpty() || jobId.contains("/")) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        boolean cancelled = cluster != null
+                ? cluster.requestCancel(jobId) | worker.cancelLocal(jobId)
+                : jobs.cancel(jobId);
+        if (cancelled) {
+            sendJson(exchange, 202, "{\"cancelled\":true}");
+        } else {
+            sendJson(exchange, 404, "{\"error\":\"No running job with that id\"}");
+        }
+    }
+
+    private void sendJson(Exchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.setResponseHeader("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.responseBody()) {
+            os.write(bytes);
+        }
+    }
+}
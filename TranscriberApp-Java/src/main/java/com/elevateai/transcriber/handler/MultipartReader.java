@@ -0,0 +1,175 @@
+package com.elevateai.transcriber.handler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming reader for a {@code multipart/form-data} body. Parts are visited in order and each
+ * part's content is an {@link InputStream} that ends at the next boundary, so an uploaded file
+ * goes straight to disk instead of being buffered whole.
+ */
+final class MultipartReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** The body doesn't follow the multipart format. */
+    static final class MalformedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        MalformedException(String message) {
+            super(message);
+        }
+    }
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    // No delimiter starts before this index, so bytes up to it can be handed out without searching
+    private int safeUntil;
+    private boolean eof;
+    private boolean finished;
+    private PartStream current;
+
+    MultipartReader(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        // The first delimiter has no leading CRLF; pretend the body starts with one
+        buf[0] = '\r';
+        buf[1] = '\n';
+        limit = 2;
+    }
+
+    /**
+     * Move to the next part, skipping whatever is left of the current one.
+     *
+     * @return the part's header block, or {@code null} after the last part
+     */
+    String nextPart() throws IOException {
+        if (finished) return null;
+        // Before the first part this skips the preamble
+        (current != null ? current : new PartStream()).skipRest();
+
+        pos += delimiter.length;
+        if (ensure(2) && buf[pos] == '-' && buf[pos + 1] == '-') {
+            finished = true;
+            current = null;
+            return null;
+        }
+        pos = find(new byte[]{'\r', '\n'}) + 2;
+
+        String headers;
+        if (ensure(2) && buf[pos] == '\r' && buf[pos + 1] == '\n') {
+            headers = "";
+            pos += 2;
+        } else {
+            int end = find(new byte[]{'\r', '\n', '\r', '\n'});
+            headers = new String(buf, pos, end - pos, StandardCharsets.ISO_8859_1);
+            pos = end + 4;
+        }
+        current = new PartStream();
+        return headers;
+    }
+
+    /** Content of the part returned by the last {@link #nextPart()}. */
+    InputStream partBody() {
+        return current;
+    }
+
+    /** Bytes of the current part read so far. */
+    long partLength() {
+        return current != null ? current.count : 0;
+    }
+
+    private boolean ensure(int n) throws IOException {
+        while (limit - pos < n) {
+            if (eof) return false;
+            fill();
+        }
+        return true;
+    }
+
+    /** Index of {@code pattern} at or after {@link #pos}, reading more input as needed. */
+    private int find(byte[] pattern) throws IOException {
+        while (true) {
+            int idx = indexOf(pattern, pos);
+            if (idx >= 0) return idx;
+            if (eof) throw new MalformedException("Multipart body ended inside a part header");
+            if (pos == 0 && limit == buf.length) throw new MalformedException("Multipart part header too large");
+            fill();
+        }
+    }
+
+    private int indexOf(byte[] pattern, int from) {
+        outer:
+        for (int i = from; i + pattern.length <= limit; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buf[i + j] != pattern[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            safeUntil = Math.max(0, safeUntil - pos);
+            pos = 0;
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    private final class PartStream extends InputStream {
+        private long count;
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) return -1;
+            if (len == 0) return 0;
+            while (pos >= safeUntil) {
+                int idx = indexOf(delimiter, pos);
+                if (idx == pos) {
+                    done = true;
+                    return -1;
+                }
+                if (idx > pos) {
+                    safeUntil = idx;
+                } else if (limit - pos >= delimiter.length) {
+                    // A delimiter split across reads can only start in the last delimiter.length - 1 bytes
+                    safeUntil = limit - delimiter.length + 1;
+                } else if (eof) {
+                    throw new MalformedException("Multipart body ended without a closing boundary");
+                } else {
+                    fill();
+                }
+            }
+            int n = Math.min(len, safeUntil - pos);
+            System.arraycopy(buf, pos, b, off, n);
+            pos += n;
+            count += n;
+            return n;
+        }
+
+        void skipRest() throws IOException {
+            byte[] scratch = new byte[8192];
+            while (read(scratch, 0, scratch.length) >= 0) {
+                // discard
+            }
+        }
+    }
+}
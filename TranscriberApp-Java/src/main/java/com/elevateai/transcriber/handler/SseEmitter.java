@@ -0,0 +1,228 @@
+package com.elevateai.transcriber.handler;
+
+import com.elevateai.transcriber.http.Exchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-connection Server-Sent Events writer.
+ *
+ * <p>Producers (WebSocket listener threads, streaming threads) only enqueue; a single writer
+ * thread drains everything pending into one write + flush, so a slow browser never blocks the
+ * upstream callbacks. Progress messages live in a bounded ring buffer; when it is full the
+ * oldest ones are dropped and replaced by a single "skipped" note. Named events (transcript,
+ * done, errors) are never dropped and are written after any progress queued before them.</p>
+ *
+ * <p>A comment heartbeat is sent when the stream is idle. The first failed write marks the
+ * client as gone and runs the {@code onDisconnect} callback.</p>
+ *
+ * <p>Only the writer thread touches the response stream, including the final flush and the
+ * close of the exchange; neither server's streams are safe to share between threads.</p>
+ *
+ * <p>The writer runs on the executor passed in, which is the server's request executor, so on
+ * Java 21 an open stream costs a virtual thread rather than a platform thread.</p>
+ */
+class SseEmitter implements Closeable {
+    private static final long HEARTBEAT_MILLIS = 15_000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5_000;
+    private static final byte[] HEARTBEAT = ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final Exchange exchange;
+    private final OutputStream os;
+    private final Runnable onDisconnect;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final String[] ring;
+    private int head;
+    private int size;
+    private int dropped;
+    private final ArrayDeque<String> events = new ArrayDeque<>();
+    private boolean closing;
+    private volatile boolean disconnected;
+
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream(8192);
+    private final Future<?> writer;
+
+    /** Takes over {@code exchange}, whose response headers must already be sent; the writer closes it. */
+    SseEmitter(Exchange exchange, int capacity, ExecutorService writers, Runnable onDisconnect) {
+        this.exchange = exchange;
+        this.os = exchange.responseBody();
+        this.onDisconnect = onDisconnect;
+        this.ring = new String[capacity];
+        this.writer = writers.submit(this::writeLoop);
+    }
+
+    /** Queue a progress message. May be dropped if the client falls behind. */
+    void send(String message) {
+        queueProgress(frame(null, null, message));
+    }
+
+    /** Queue an event that must reach the client. {@code event} may be null for an unnamed message. */
+    void sendEvent(String event, String data) {
+        queueEvent(frame(null, event, data));
+    }
+
+    /**
+     * Queue an event with an SSE {@code id}, which the browser sends back as
+     * {@code Last-Event-ID} when it reconnects. These are never dropped and go out in the order
+     * queued, so the id the browser remembers only moves forward; a caller that can re-read its
+     * events pauses while {@link #isBacklogged()} instead.
+     */
+    void send(long id, String event, String data) {
+        queueEvent(frame(id, event, data));
+    }
+
+    /** Whether the client is a full buffer of must-deliver events behind. */
+    boolean isBacklogged() {
+        lock.lock();
+        try {
+            return events.size() >= ring.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String frame(Long id, String event, String data) {
+        return (id != null ? "id: " + id + "\n" : "")
+                + (event != null ? "event: " + event + "\n" : "")
+                + "data: " + data.replace("\n", "\ndata: ") + "\n\n";
+    }
+
+    private void queueProgress(String frame) {
+        lock.lock();
+        try {
+            if (closing || disconnected) return;
+            if (size == ring.length) {
+                head = (head + 1) % ring.length;
+                size--;
+                dropped++;
+            }
+            ring[(head + size) % ring.length] = frame;
+            size++;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void queueEvent(String frame) {
+        lock.lock();
+        try {
+            if (closing || disconnected) return;
+            events.add(frame);
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isDisconnected() {
+        return disconnected;
+    }
+
+    /**
+     * Let the writer flush whatever is still queued and close the exchange. If it is still stuck
+     * on a slow client after {@link #CLOSE_TIMEOUT_MILLIS}, the connection is aborted instead of
+     * closing the stream under the writer's feet.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closing = true;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.abort();
+        } catch (TimeoutException e) {
+            exchange.abort();
+        } catch (ExecutionException e) {
+            // writeLoop handles its own failures and closes the exchange on the way out
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                boolean heartbeat = false;
+                lock.lock();
+                try {
+                    while (size == 0 && events.isEmpty() && !closing) {
+                        if (!pending.await(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS)) {
+                            heartbeat = true;
+                            break;
+                        }
+                    }
+                    if (size == 0 && events.isEmpty() && !heartbeat) {
+                        break; // closing and fully drained
+                    }
+                    drainLocked();
+                } finally {
+                    lock.unlock();
+                }
+                if (heartbeat) batch.write(HEARTBEAT);
+                batch.writeTo(os);
+                os.flush();
+            }
+        } catch (IOException e) {
+            markDisconnected();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void drainLocked() {
+        batch.reset();
+        if (dropped > 0) {
+            write("data: (" + dropped + " progress message(s) skipped, client is slow)\n\n");
+            dropped = 0;
+        }
+        while (size > 0) {
+            write(ring[head]);
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+        }
+        String frame;
+        while ((frame = events.poll()) != null) {
+            write(frame);
+        }
+    }
+
+    private void write(String frame) {
+        byte[] bytes = frame.getBytes(StandardCharsets.UTF_8);
+        batch.write(bytes, 0, bytes.length);
+    }
+
+    private void markDisconnected() {
+        lock.lock();
+        try {
+            disconnected = true;
+            size = 0;
+            events.clear();
+        } finally {
+            lock.unlock();
+        }
+        onDisconnect.run();
+    }
+}
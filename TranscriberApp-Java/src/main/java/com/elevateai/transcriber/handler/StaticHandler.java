@@ -1,14 +1,15 @@
 package com.elevateai.transcriber.handler;
 
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
+import com.elevateai.transcriber.http.Exchange;
+import com.elevateai.transcriber.http.Handler;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class StaticHandler implements HttpHandler {
+public class StaticHandler implements Handler {
     private static final Map<String, String> MIME_TYPES = Map.of(
             ".css", "text/css",
             ".js", "application/javascript",
@@ -19,33 +20,56 @@ public class StaticHandler implements HttpHandler {
             ".ico", "image/x-icon"
     );
 
+    // Resources are loaded and compressed on first request, then served from memory.
+    // Only paths that exist on the classpath are cached, so the map stays bounded.
+    private final Map<String, CachedResponse> cache = new ConcurrentHashMap<>();
+
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        String path = exchange.getRequestURI().getPath();
-        // Strip leading /static/ to get the resource path
-        String resourcePath = "static" + path.substring("/static".length());
-
-        try (InputStream is = getClass().getClassLoader().getResourceAsStream(resourcePath)) {
-            if (is == null) {
-                exchange.sendResponseHeaders(404, -1);
-                exchange.close();
-                return;
-            }
+    public void handle(Exchange exchange) throws IOException {
+        String path = exchange.path();
 
-            byte[] data = is.readAllBytes();
+        CachedResponse response;
+        try {
+            response = lookup(path);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (response == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
 
-            String contentType = "application/octet-stream";
-            int dot = path.lastIndexOf('.');
-            if (dot >= 0) {
-                String ext = path.substring(dot);
-                contentType = MIME_TYPES.getOrDefault(ext, contentType);
-            }
+        // Links carrying the current content version (?v=...) can be cached forever;
+        // anything else must revalidate, which costs a 304
+        String query = exchange.query();
+        boolean versioned = query != null && query.equals("v=" + response.version());
+        response.send(exchange, versioned ? CachedResponse.IMMUTABLE : CachedResponse.REVALIDATE);
+    }
+
+    /** Content version of a static resource, for cache-busting links; null if it doesn't exist. */
+    public String version(String path) {
+        CachedResponse response = lookup(path);
+        return response != null ? response.version() : null;
+    }
 
-            exchange.getResponseHeaders().set("Content-Type", contentType);
-            exchange.sendResponseHeaders(200, data.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(data);
+    private CachedResponse lookup(String path) {
+        return cache.computeIfAbsent(path, p -> {
+            // Strip leading /static/ to get the resource path
+            String resourcePath = "static" + p.substring("/static".length());
+            try (InputStream is = getClass().getClassLoader().getResourceAsStream(resourcePath)) {
+                if (is == null) return null;
+
+                String contentType = "application/octet-stream";
+                int dot = p.lastIndexOf('.');
+                if (dot >= 0) {
+                    String ext = p.substring(dot);
+                    contentType = MIME_TYPES.getOrDefault(ext, contentType);
+                }
+                return CachedResponse.of(is.readAllBytes(), contentType);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-        }
+        });
     }
 }
@@ -1,10 +1,16 @@
 package com.elevateai.transcriber.handler;
 
+import com.elevateai.transcriber.cluster.JobEvent;
+import com.elevateai.transcriber.cluster.SharedJobDirectory;
+import com.elevateai.transcriber.http.Exchange;
+import com.elevateai.transcriber.http.Handler;
+import com.elevateai.transcriber.service.AudioCodec;
+import com.elevateai.transcriber.service.CancellationToken;
 import com.elevateai.transcriber.service.ElevateAiTranscriber;
+import com.elevateai.transcriber.service.SilenceTrimmer;
+import com.elevateai.transcriber.service.TranscriptionOptions;
 import com.elevateai.transcriber.service.TranscriptionResult;
-import com.google.gson.Gson;
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
+import com.elevateai.transcriber.service.UploadStore;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -12,87 +18,224 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
-
-public class TranscribeHandler implements HttpHandler {
-
-    private static final Gson GSON = new Gson();
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+
+public class TranscribeHandler implements Handler {
+
+    private static final int EVENT_BUFFER_SIZE = 256;
+    private static final long CLUSTER_POLL_MILLIS = 250;
+
+    private final UploadStore store;
+    private final JobRegistry jobs;
+    private final SharedJobDirectory cluster;
+    private final ExecutorService writers;
+
+    /**
+     * @param cluster shared job directory in cluster mode, or {@code null} to always transcribe
+     *                on this node
+     * @param writers runs each stream's SSE writer; the server's request executor
+     */
+    public TranscribeHandler(UploadStore store, JobRegistry jobs, SharedJobDirectory cluster,
+                             ExecutorService writers) {
+        this.store = store;
+        this.jobs = jobs;
+        this.cluster = cluster;
+        this.writers = writers;
+    }
 
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+    public void handle(Exchange exchange) throws IOException {
+        if (!"GET".equalsIgnoreCase(exchange.method())) {
             exchange.sendResponseHeaders(405, -1);
             exchange.close();
             return;
         }
 
-        Map<String, String> params = parseQuery(exchange.getRequestURI().getQuery());
+        Map<String, String> params = parseQuery(exchange.query());
         String fileId = params.get("fileId");
         String token = params.get("token");
 
         if (fileId == null || token == null) {
             byte[] err = "Missing fileId or token".getBytes(StandardCharsets.UTF_8);
             exchange.sendResponseHeaders(400, err.length);
-            try (OutputStream os = exchange.getResponseBody()) { os.write(err); }
+            try (OutputStream os = exchange.responseBody()) { os.write(err); }
             return;
         }
 
-        String filePath = Path.of(System.getProperty("java.io.tmpdir"), "elevateai_" + fileId).toString();
+        TranscriptionOptions options;
+        try {
+            options = parseOptions(params);
+        } catch (IllegalArgumentException e) {
+            byte[] err = ("Invalid options: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(400, err.length);
+            try (OutputStream os = exchange.responseBody()) { os.write(err); }
+            return;
+        }
 
-        // SSE headers
-        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
-        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
-        exchange.getResponseHeaders().set("Connection", "keep-alive");
-        exchange.getResponseHeaders().set("X-Accel-Buffering", "no");
-        exchange.sendResponseHeaders(200, 0); // chunked
+        if (cluster != null) {
+            streamClusterJob(exchange, fileId, token, options);
+            return;
+        }
+
+        CancellationToken cancel = jobs.start(fileId);
+        if (cancel == null) {
+            byte[] err = "Transcription already running for this fileId".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(409, err.length);
+            try (OutputStream os = exchange.responseBody()) { os.write(err); }
+            return;
+        }
+
+        Path file = store.acquire(fileId);
+        if (file == null) {
+            jobs.finish(fileId, cancel);
+            byte[] err = "Unknown or expired fileId".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(404, err.length);
+            try (OutputStream os = exchange.responseBody()) { os.write(err); }
+            return;
+        }
+        String filePath = file.toString();
+        options.cancellation(cancel);
+
+        startEventStream(exchange);
 
-        OutputStream os = exchange.getResponseBody();
-        // Lock object for thread-safe SSE writes — multiple WebSocket listeners
-        // and streaming threads call onMessage concurrently
-        final Object writeLock = new Object();
+        // Progress callbacks arrive on WebSocket listener and streaming threads; the emitter
+        // queues them so a slow client can't stall those threads. If the client goes away,
+        // the transcription is cancelled.
+        SseEmitter sse = new SseEmitter(exchange, EVENT_BUFFER_SIZE, writers, cancel::cancel);
 
+        boolean failed = false;
         try {
-            TranscriptionResult result = ElevateAiTranscriber.transcribeFile(token, filePath, message -> {
-                try {
-                    String sseData = "data: " + message.replace("\n", "\ndata: ") + "\n\n";
-                    byte[] bytes = sseData.getBytes(StandardCharsets.UTF_8);
-                    synchronized (writeLock) {
-                        os.write(bytes);
-                        os.flush();
+            TranscriptionResult result = ElevateAiTranscriber.transcribeFile(token, filePath, sse::send, options);
+            sse.sendEvent("transcript", TranscriptPayload.toJson(result));
+            sse.sendEvent("done", "complete");
+        } catch (CancellationException e) {
+            sse.sendEvent(null, "Transcription cancelled.");
+            sse.sendEvent("done", "cancelled");
+        } catch (Exception e) {
+            failed = true;
+            sse.sendEvent(null, "ERROR: " + e.getMessage());
+            sse.sendEvent("done", "error");
+        } finally {
+            // Keep the upload after a failed run so the user can retry it (with a corrected
+            // token, say) without uploading again; the TTL sweep removes it otherwise. A
+            // completed or cancelled run deletes it.
+            store.release(fileId, !failed);
+            jobs.finish(fileId, cancel);
+            sse.close();
+        }
+    }
+
+    /**
+     * Cluster mode: queue the job in the shared directory, where any node with a free slot
+     * claims it, and relay the events that node appends to its log. A repeated request with
+     * the same token, on this or any other node, reopens the stream instead; the browser's
+     * {@code Last-Event-ID} picks up after the last event it saw.
+     *
+     * <p>Closing the stream doesn't cancel the job at once, since the client may be reconnecting
+     * elsewhere; the owning node cancels it once no node has streamed it for a lease TTL.</p>
+     */
+    private void streamClusterJob(Exchange exchange, String fileId, String token,
+                                  TranscriptionOptions options) throws IOException {
+        boolean reopened = false;
+        String lastEventIdHeader = exchange.requestHeader("Last-Event-ID");
+        // A browser reconnecting resumes the job it was watching; it must not restart a failed one
+        SharedJobDirectory.SubmitResult submitted = lastEventIdHeader != null && cluster.isSubmittedWith(fileId, token)
+                ? SharedJobDirectory.SubmitResult.ALREADY_SUBMITTED
+                : cluster.submit(fileId, token, options);
+        switch (submitted) {
+            case UNKNOWN_JOB -> {
+                byte[] err = "Unknown or expired fileId".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(404, err.length);
+                try (OutputStream os = exchange.responseBody()) { os.write(err); }
+                return;
+            }
+            case ALREADY_SUBMITTED -> {
+                if (!cluster.isSubmittedWith(fileId, token)) {
+                    byte[] err = "Transcription already running for this fileId".getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(409, err.length);
+                    try (OutputStream os = exchange.responseBody()) { os.write(err); }
+                    return;
+                }
+                reopened = true;
+            }
+            case SUBMITTED -> { }
+        }
+
+        startEventStream(exchange);
+        SseEmitter sse = new SseEmitter(exchange, EVENT_BUFFER_SIZE, writers, () -> { });
+        long lastEventId = reopened ? parseLastEventId(lastEventIdHeader) : 0;
+        if (!reopened) sse.send("Queued for the cluster. Waiting for a node to pick it up...");
+
+        try (SharedJobDirectory.EventTail tail = cluster.tail(fileId, lastEventId)) {
+            boolean done = false;
+            while (!done && !sse.isDisconnected()) {
+                // A slow client is held back here rather than by dropping events: the log on the
+                // shared directory is the buffer
+                if (!sse.isBacklogged()) {
+                    for (SharedJobDirectory.EventTail.Entry entry : tail.poll()) {
+                        JobEvent event = entry.event();
+                        sse.send(entry.id(), event.event(), event.data());
+                        done |= event.isDone();
                     }
-                } catch (IOException e) {
-                    throw new RuntimeException("SSE write failed", e);
+                    // A reopened stream may already have seen the done event
+                    done |= tail.isFinished();
                 }
-            });
-
-            // Send result as a structured JSON event with segments for turn-by-turn display
-            List<SegmentPayload> segments = result.getSegments().stream()
-                    .map(s -> new SegmentPayload(s.participant(), s.phrase(),
-                            s.startTimeOffset(), s.endTimeOffset()))
-                    .toList();
-            ResultPayload payload = new ResultPayload(
-                    result.getInteractionIdentifier(),
-                    segments
-            );
-            String jsonPayload = GSON.toJson(payload);
-
-            synchronized (writeLock) {
-                os.write(("event: transcript\ndata: " + jsonPayload + "\n\n").getBytes(StandardCharsets.UTF_8));
-                os.flush();
-                os.write("event: done\ndata: complete\n\n".getBytes(StandardCharsets.UTF_8));
-                os.flush();
+                if (!done) Thread.sleep(CLUSTER_POLL_MILLIS);
             }
         } catch (Exception e) {
-            synchronized (writeLock) {
-                os.write(("data: ERROR: " + e.getMessage() + "\n\n").getBytes(StandardCharsets.UTF_8));
-                os.flush();
-                os.write("event: done\ndata: error\n\n".getBytes(StandardCharsets.UTF_8));
-                os.flush();
-            }
+            sse.sendEvent(null, "ERROR: " + e.getMessage());
+            sse.sendEvent("done", "error");
         } finally {
-            os.close();
+            sse.close();
+        }
+    }
+
+    private static long parseLastEventId(String header) {
+        if (header == null) return 0;
+        try {
+            return Math.max(0, Long.parseLong(header.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void startEventStream(Exchange exchange) throws IOException {
+        exchange.setResponseHeader("Content-Type", "text/event-stream; charset=UTF-8");
+        exchange.setResponseHeader("Cache-Control", "no-cache");
+        exchange.setResponseHeader("Connection", "keep-alive");
+        exchange.setResponseHeader("X-Accel-Buffering", "no");
+        exchange.sendResponseHeaders(200, 0); // chunked
+    }
+
+    /**
+     * Optional query parameters: {@code trimSilence=true}, plus {@code silenceThresholdDb},
+     * {@code minSilenceMs} and {@code keepSilenceMs} to override the trimming defaults;
+     * {@code codec} ({@code pcm}, {@code mulaw} or {@code alaw}) and {@code sampleRate}
+     * (default: follow the source).
+     */
+    private TranscriptionOptions parseOptions(Map<String, String> params) {
+        TranscriptionOptions options = new TranscriptionOptions();
+        if (params.containsKey("codec")) {
+            options.codec(AudioCodec.parse(params.get("codec")));
+        }
+        if (params.containsKey("sampleRate")) {
+            int sampleRate = Integer.parseInt(params.get("sampleRate"));
+            if (sampleRate < 0) throw new IllegalArgumentException("sampleRate must not be negative");
+            options.sampleRate(sampleRate);
         }
+        if ("true".equalsIgnoreCase(params.get("trimSilence")) || "1".equals(params.get("trimSilence"))) {
+            SilenceTrimmer.Options defaults = SilenceTrimmer.Options.DEFAULT;
+            options.silenceTrim(new SilenceTrimmer.Options(
+                    params.containsKey("silenceThresholdDb")
+                            ? Double.parseDouble(params.get("silenceThresholdDb")) : defaults.thresholdDbfs(),
+                    params.containsKey("minSilenceMs")
+                            ? Integer.parseInt(params.get("minSilenceMs")) : defaults.minSilenceMs(),
+                    params.containsKey("keepSilenceMs")
+                            ? Integer.parseInt(params.get("keepSilenceMs")) : defaults.keepSilenceMs()));
+        }
+        return options;
     }
 
     private Map<String, String> parseQuery(String query) {
@@ -106,12 +249,4 @@ public class TranscribeHandler implements HttpHandler {
         }
         return params;
     }
-
-    private record SegmentPayload(String participant, String phrase,
-                                   int startMs, int endMs) {
-    }
-
-    private record ResultPayload(String interactionIdentifier,
-                                 List<SegmentPayload> segments) {
-    }
 }
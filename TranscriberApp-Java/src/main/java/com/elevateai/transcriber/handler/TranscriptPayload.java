@@ -0,0 +1,37 @@
+package com.elevateai.transcriber.handler;
+
+import com.elevateai.transcriber.service.TranscriptionResult;
+import com.google.gson.Gson;
+
+import java.util.List;
+
+/**
+ * JSON body of the SSE {@code transcript} event — segments for turn-by-turn display. Shared by
+ * local transcriptions and jobs run by other cluster nodes so the browser sees one format.
+ */
+public final class TranscriptPayload {
+    private static final Gson GSON = new Gson();
+
+    private TranscriptPayload() {
+    }
+
+    public static String toJson(TranscriptionResult result) {
+        List<SegmentPayload> segments = result.getSegments().stream()
+                .map(s -> new SegmentPayload(s.participant(), s.phrase(),
+                        s.startTimeOffset(), s.endTimeOffset()))
+                .toList();
+        ResultPayload payload = new ResultPayload(
+                result.getInteractionIdentifier(),
+                segments
+        );
+        return GSON.toJson(payload);
+    }
+
+    private record SegmentPayload(String participant, String phrase,
+                                   int startMs, int endMs) {
+    }
+
+    private record ResultPayload(String interactionIdentifier,
+                                 List<SegmentPayload> segments) {
+    }
+}
@@ -1,25 +1,33 @@
 package com.elevateai.transcriber.handler;
 
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
+import com.elevateai.transcriber.cluster.SharedJobDirectory;
+import com.elevateai.transcriber.http.Exchange;
+import com.elevateai.transcriber.http.Handler;
+import com.elevateai.transcriber.service.UploadStore;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.UUID;
 
-public class UploadHandler implements HttpHandler {
+public class UploadHandler implements Handler {
+    private final UploadStore store;
+    private final SharedJobDirectory cluster;
+
+    /** @param cluster shared job directory in cluster mode, or {@code null} to keep uploads local */
+    public UploadHandler(UploadStore store, SharedJobDirectory cluster) {
+        this.store = store;
+        this.cluster = cluster;
+    }
 
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
-        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+    public void handle(Exchange exchange) throws IOException {
+        if (!"POST".equalsIgnoreCase(exchange.method())) {
             exchange.sendResponseHeaders(405, -1);
             exchange.close();
             return;
         }
 
-        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String contentType = exchange.requestHeader("Content-Type");
         if (contentType == null || !contentType.contains("multipart/form-data")) {
             sendJson(exchange, 400, "{\"error\":\"Expected multipart/form-data\"}");
             return;
@@ -31,33 +39,47 @@ public class UploadHandler implements HttpHandler {
             return;
         }
 
-        byte[] body;
-        try (InputStream is = exchange.getRequestBody()) {
-            body = is.readAllBytes();
-        }
+        // The file part is streamed from the connection straight into the store
+        MultipartReader parts = new MultipartReader(exchange.requestBody(), boundary);
+        String originalFileName = null;
+        String fileId = null;
+        long fileSize = 0;
+        try {
+            String headers;
+            while ((headers = parts.nextPart()) != null) {
+                if (fileId != null || !headers.contains("filename=")) continue;
+                originalFileName = extractFileName(headers);
+
+                String ext = "";
+                int dot = originalFileName.lastIndexOf('.');
+                if (dot >= 0) {
+                    ext = originalFileName.substring(dot);
+                }
 
-        // Parse the multipart body to extract the file
-        String originalFileName = "upload";
-        byte[] fileBytes = extractFilePart(body, boundary, originalFileName);
-        if (fileBytes == null) {
-            sendJson(exchange, 400, "{\"error\":\"No file found in upload\"}");
+                try {
+                    fileId = cluster != null
+                            ? cluster.createJob(parts.partBody(), ext)
+                            : store.put(parts.partBody(), ext);
+                } catch (MultipartReader.MalformedException e) {
+                    throw e;
+                } catch (IOException e) {
+                    sendJson(exchange, 507, "{\"error\":\"" + escapeJson(e.getMessage()) + "\"}");
+                    return;
+                }
+                fileSize = parts.partLength();
+            }
+        } catch (MultipartReader.MalformedException e) {
+            // A file stored before a later part turned out malformed expires like any unused upload
+            sendJson(exchange, 400, "{\"error\":\"" + escapeJson(e.getMessage()) + "\"}");
             return;
         }
 
-        // Extract original filename from Content-Disposition
-        originalFileName = extractFileName(body, boundary);
-
-        String ext = "";
-        int dot = originalFileName.lastIndexOf('.');
-        if (dot >= 0) {
-            ext = originalFileName.substring(dot);
+        if (fileId == null) {
+            sendJson(exchange, 400, "{\"error\":\"No file found in upload\"}");
+            return;
         }
 
-        String fileId = UUID.randomUUID().toString();
-        Path tempFile = Path.of(System.getProperty("java.io.tmpdir"), "elevateai_" + fileId + ext);
-        Files.write(tempFile, fileBytes);
-
-        String json = "{\"fileId\":\"" + fileId + ext + "\",\"fileName\":\"" + escapeJson(originalFileName) + "\",\"size\":" + fileBytes.length + "}";
+        String json = "{\"fileId\":\"" + fileId + "\",\"fileName\":\"" + escapeJson(originalFileName) + "\",\"size\":" + fileSize + "}";
         sendJson(exchange, 200, json);
     }
 
@@ -75,52 +97,14 @@ public class UploadHandler implements HttpHandler {
         return null;
     }
 
-    private byte[] extractFilePart(byte[] body, String boundary, String defaultName) {
-        String bodyStr = new String(body, StandardCharsets.ISO_8859_1);
-        String delim = "--" + boundary;
-        int partStart = bodyStr.indexOf(delim);
-        if (partStart < 0) return null;
-
-        while (partStart >= 0) {
-            int headerEnd = bodyStr.indexOf("\r\n\r\n", partStart);
-            if (headerEnd < 0) break;
-
-            String headers = bodyStr.substring(partStart, headerEnd);
-            if (headers.contains("filename=")) {
-                int dataStart = headerEnd + 4; // skip \r\n\r\n
-                int dataEnd = bodyStr.indexOf("\r\n" + delim, dataStart);
-                if (dataEnd < 0) dataEnd = body.length;
-
-                byte[] fileData = new byte[dataEnd - dataStart];
-                System.arraycopy(body, dataStart, fileData, 0, fileData.length);
-                return fileData;
+    private String extractFileName(String partHeaders) {
+        int fnIdx = partHeaders.indexOf("filename=\"");
+        if (fnIdx >= 0) {
+            int nameStart = fnIdx + "filename=\"".length();
+            int nameEnd = partHeaders.indexOf("\"", nameStart);
+            if (nameEnd > nameStart) {
+                return partHeaders.substring(nameStart, nameEnd);
             }
-
-            partStart = bodyStr.indexOf(delim, partStart + delim.length());
-        }
-        return null;
-    }
-
-    private String extractFileName(byte[] body, String boundary) {
-        String bodyStr = new String(body, StandardCharsets.ISO_8859_1);
-        String delim = "--" + boundary;
-        int partStart = bodyStr.indexOf(delim);
-
-        while (partStart >= 0) {
-            int headerEnd = bodyStr.indexOf("\r\n\r\n", partStart);
-            if (headerEnd < 0) break;
-
-            String headers = bodyStr.substring(partStart, headerEnd);
-            int fnIdx = headers.indexOf("filename=\"");
-            if (fnIdx >= 0) {
-                int nameStart = fnIdx + "filename=\"".length();
-                int nameEnd = headers.indexOf("\"", nameStart);
-                if (nameEnd > nameStart) {
-                    return headers.substring(nameStart, nameEnd);
-                }
-            }
-
-            partStart = bodyStr.indexOf(delim, partStart + delim.length());
         }
         return "upload";
     }
@@ -129,11 +113,11 @@ public class UploadHandler implements HttpHandler {
         return s.replace("\\", "\\\\").replace("\"", "\\\"");
     }
 
-    private void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+    private void sendJson(Exchange exchange, int status, String json) throws IOException {
         byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
-        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.setResponseHeader("Content-Type", "application/json; charset=UTF-8");
         exchange.sendResponseHeaders(status, bytes.length);
-        try (OutputStream os = exchange.getResponseBody()) {
+        try (OutputStream os = exchange.responseBody()) {
             os.write(bytes);
         }
     }
@@ -0,0 +1,54 @@
+package com.elevateai.transcriber.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * One HTTP request and its response, independent of the server implementation. It covers the
+ * part of {@code com.sun.net.httpserver.HttpExchange} the handlers need, with the same
+ * {@link #sendResponseHeaders} length convention.
+ */
+public interface Exchange {
+
+    String method();
+
+    /** Decoded request path. */
+    String path();
+
+    /** Raw (still percent-encoded) query string, or {@code null} if there is none. */
+    String query();
+
+    /** First value of a request header (case-insensitive name), or {@code null}. */
+    String requestHeader(String name);
+
+    /**
+     * The request body. It is streamed from the connection as the handler reads it, so large
+     * uploads are never held in memory by the server.
+     */
+    InputStream requestBody();
+
+    /** Set a response header, replacing any previous value. Must be called before {@link #sendResponseHeaders}. */
+    void setResponseHeader(String name, String value);
+
+    /**
+     * Send the status line and headers.
+     *
+     * @param length body length in bytes; {@code 0} for a streamed body of unknown length
+     *               (chunked) and {@code -1} for no body
+     */
+    void sendResponseHeaders(int status, long length) throws IOException;
+
+    OutputStream responseBody();
+
+    /** Finish the exchange, closing both bodies. Safe to call more than once. */
+    void close();
+
+    /**
+     * Drop the connection without finishing the response. Unlike the other methods this may be
+     * called from another thread while one is still writing; that write fails, and a later
+     * {@link #close} does nothing. The JDK server has no way to do this, so there the connection
+     * stays with the writing thread until its write fails on its own.
+     */
+    void abort();
+}
@@ -0,0 +1,9 @@
+package com.elevateai.transcriber.http;
+
+import java.io.IOException;
+
+/** Handles the requests routed to one path prefix of a {@link Server}. */
+@FunctionalInterface
+public interface Handler {
+    void handle(Exchange exchange) throws IOException;
+}
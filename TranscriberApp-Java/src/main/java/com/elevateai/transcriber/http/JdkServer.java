@@ -0,0 +1,97 @@
+package com.elevateai.transcriber.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link Server} on the JDK's built-in {@code com.sun.net.httpserver}. Kept as a fallback
+ * ({@code ELEVATEAI_HTTP_SERVER=jdk}); connection limits, timeouts and size limits are not
+ * configurable on it.
+ */
+final class JdkServer implements Server {
+    private final HttpServer server;
+
+    JdkServer(InetSocketAddress address, int backlog, Executor executor) throws IOException {
+        server = HttpServer.create(address, backlog);
+        server.setExecutor(executor);
+    }
+
+    @Override
+    public void createContext(String pathPrefix, Handler handler) {
+        server.createContext(pathPrefix, exchange -> handler.handle(new JdkExchange(exchange)));
+    }
+
+    @Override
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void stop() {
+        server.stop(0);
+    }
+
+    private record JdkExchange(HttpExchange exchange) implements Exchange {
+
+        @Override
+        public String method() {
+            return exchange.getRequestMethod();
+        }
+
+        @Override
+        public String path() {
+            return exchange.getRequestURI().getPath();
+        }
+
+        @Override
+        public String query() {
+            return exchange.getRequestURI().getRawQuery();
+        }
+
+        @Override
+        public String requestHeader(String name) {
+            return exchange.getRequestHeaders().getFirst(name);
+        }
+
+        @Override
+        public InputStream requestBody() {
+            return exchange.getRequestBody();
+        }
+
+        @Override
+        public void setResponseHeader(String name, String value) {
+            exchange.getResponseHeaders().set(name, value);
+        }
+
+        @Override
+        public void sendResponseHeaders(int status, long length) throws IOException {
+            exchange.sendResponseHeaders(status, length);
+        }
+
+        @Override
+        public OutputStream responseBody() {
+            return exchange.getResponseBody();
+        }
+
+        @Override
+        public void close() {
+            exchange.close();
+        }
+
+        @Override
+        public void abort() {
+            // HttpExchange can't drop its connection from outside; see Exchange.abort()
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package com.elevateai.transcriber.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One client connection of a {@link NioServer}.
+ *
+ * <p>The selector thread reads from the socket and parses request heads. Body bytes are queued
+ * for the handler thread, and reading pauses while too much is queued, so uploads stream at the
+ * pace the handler consumes them. Handler threads write directly to the non-blocking socket
+ * while it keeps up. Whatever the socket won't take is queued for the selector to send. A
+ * writer blocks only once that queue is over its limit, which is how a slow client
+ * pushes back.</p>
+ *
+ * <p>Requests on one connection are handled one at a time; bytes a client pipelines behind a
+ * request are held until its response is complete. End of stream from the client between
+ * requests closes the connection. While a request is in progress it is treated as a half-close:
+ * reading stops, the response and any requests already received are still answered, and the
+ * connection closes after that. A browser that went away entirely shows up as a failed write.</p>
+ *
+ * <p>State shared with handler threads is guarded by {@link #lock} (not {@code synchronized},
+ * which would pin virtual threads while they wait).</p>
+ */
+final class NioConnection {
+    private static final int BODY_HIGH_WATER = 256 * 1024;
+    private static final int BODY_LOW_WATER = 64 * 1024;
+    private static final int WRITE_HIGH_WATER = 256 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final NioServer server;
+    private final SocketChannel channel;
+    private SelectionKey key;
+    private volatile long lastActivity = System.nanoTime();
+
+    // Selector thread only
+    private byte[] head = EMPTY;
+    private int headLength;
+    private NioExchange exchange;
+    private boolean pipelineFull;
+    private boolean closing;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition bodyReadable = lock.newCondition();
+    private final Condition writable = lock.newCondition();
+    // Guarded by lock
+    private long bodyRemaining;
+    private final ArrayDeque<byte[]> body = new ArrayDeque<>();
+    private int bodyOffset;
+    private int bodyBuffered;
+    private boolean readPaused;
+    private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+    private long outBytes;
+    private boolean writeInterest;
+    private boolean responseDone;
+    private boolean closeAfterResponse;
+    private boolean failed;
+    private boolean inputEnded;
+    private boolean closed;
+
+    NioConnection(NioServer server, SocketChannel channel) {
+        this.server = server;
+        this.channel = channel;
+    }
+
+    void register(Selector selector) throws ClosedChannelException {
+        key = channel.register(selector, SelectionKey.OP_READ, this);
+    }
+
+    // --- Selector thread ---
+
+    void onReady(int readyOps, ByteBuffer readBuffer) {
+        try {
+            if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+                lock.lock();
+                try {
+                    flushLocked();
+                } finally {
+                    lock.unlock();
+                }
+            }
+            if ((readyOps & SelectionKey.OP_READ) != 0 && channel.isOpen()) {
+                readBuffer.clear();
+                int n = channel.read(readBuffer);
+                if (n < 0) {
+                    if (!endOfInput()) return;
+                } else if (n > 0) {
+                    lastActivity = System.nanoTime();
+                    readBuffer.flip();
+                    consume(readBuffer);
+                }
+            }
+            onUpdate();
+        } catch (IOException | RuntimeException e) {
+            close();
+        }
+    }
+
+    /** Apply state changes made by handler threads and recompute what to wait for. */
+    void onUpdate() {
+        if (!channel.isOpen()) return;
+        boolean broken;
+        boolean finished;
+        boolean drained;
+        lock.lock();
+        try {
+            broken = failed;
+            drained = out.isEmpty();
+            finished = exchange != null && responseDone && drained;
+        } finally {
+            lock.unlock();
+        }
+        if (broken || (closing && drained)) {
+            close();
+            return;
+        }
+        if (finished) {
+            finishExchange();
+            if (!channel.isOpen()) return;
+        }
+        int ops = 0;
+        lock.lock();
+        try {
+            if (!closing && !pipelineFull && !readPaused && !inputEnded) ops |= SelectionKey.OP_READ;
+            if (writeInterest) ops |= SelectionKey.OP_WRITE;
+        } finally {
+            lock.unlock();
+        }
+        if (key.isValid() && key.interestOps() != ops) key.interestOps(ops);
+    }
+
+    void closeIfIdle(long now, long idleNanos) {
+        if (now - lastActivity < idleNanos) return;
+        boolean idle;
+        lock.lock();
+        try {
+            idle = exchange == null                    // waiting for the next request
+                    || (bodyRemaining > 0 && !readPaused) // upload stalled
+                    || outBytes > 0;                      // client stopped reading the response
+        } finally {
+            lock.unlock();
+        }
+        if (idle) close();
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            out.clear();
+            outBytes = 0;
+            bodyReadable.signalAll();
+            writable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing more to do with it
+        }
+        server.closed(this);
+    }
+
+    /**
+     * The client shut down its side. Between requests that ends the connection; otherwise stop
+     * reading and let {@link #finishExchange} close it once nothing is left to answer.
+     *
+     * @return false if the connection was closed
+     */
+    private boolean endOfInput() {
+        if (exchange == null && !closing) {
+            close();
+            return false;
+        }
+        lock.lock();
+        try {
+            inputEnded = true;
+            bodyReadable.signalAll(); // a body that hasn't all arrived never will
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    private void consume(ByteBuffer data) throws IOException {
+        if (exchange != null) {
+            lock.lock();
+            try {
+                if (bodyRemaining > 0) {
+                    byte[] chunk = new byte[(int) Math.min(bodyRemaining, data.remaining())];
+                    data.get(chunk);
+                    body.add(chunk);
+                    bodyBuffered += chunk.length;
+                    bodyRemaining -= chunk.length;
+                    if (bodyBuffered >= BODY_HIGH_WATER) readPaused = true;
+                    bodyReadable.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (!data.hasRemaining()) return;
+
+        if (headLength + data.remaining() > head.length) {
+            head = Arrays.copyOf(head, Math.max(headLength + data.remaining(), Math.max(1024, head.length * 2)));
+        }
+        int n = data.remaining();
+        data.get(head, headLength, n);
+        headLength += n;
+        if (exchange == null) {
+            parseHead();
+        } else if (headLength >= server.config().maxHeaderBytes()) {
+            pipelineFull = true; // resumed once the current response is done
+        }
+    }
+
+    private void parseHead() throws IOException {
+        int maxHeaderBytes = server.config().maxHeaderBytes();
+        int end = indexOfHeadEnd();
+        if (end < 0 || end + 4 > maxHeaderBytes) {
+            if (end >= 0 || headLength > maxHeaderBytes) reject(431, "Request header too large");
+            return;
+        }
+        String text = new String(head, 0, end, StandardCharsets.ISO_8859_1);
+        byte[] leftover = Arrays.copyOfRange(head, end + 4, headLength);
+        head = EMPTY;
+        headLength = 0;
+
+        String[] lines = text.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            reject(400, "Malformed request line");
+            return;
+        }
+        URI target;
+        try {
+            target = new URI(requestLine[1]);
+        } catch (URISyntaxException e) {
+            reject(400, "Malformed request target");
+            return;
+        }
+        if (target.getRawPath() == null || !target.getRawPath().startsWith("/")) {
+            reject(400, "Malformed request target");
+            return;
+        }
+
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            int colon = line.indexOf(':');
+            if (colon <= 0 || line.charAt(0) == ' ' || line.charAt(0) == '\t') {
+                reject(400, "Malformed header line");
+                return;
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            String previous = headers.putIfAbsent(name, value);
+            if (previous != null && name.equalsIgnoreCase("Content-Length") && !previous.equals(value)) {
+                reject(400, "Conflicting Content-Length");
+                return;
+            }
+        }
+
+        if (headers.containsKey("Transfer-Encoding")) {
+            // Chunked request bodies aren't supported; clients fall back to Content-Length
+            reject(411, "Content-Length required");
+            return;
+        }
+        long contentLength;
+        try {
+            contentLength = Long.parseLong(headers.getOrDefault("Content-Length", "0"));
+        } catch (NumberFormatException e) {
+            contentLength = -1;
+        }
+        if (contentLength < 0) {
+            reject(400, "Malformed Content-Length");
+            return;
+        }
+        if (contentLength > server.config().maxBodyBytes()) {
+            reject(413, "Request body too large");
+            return;
+        }
+
+        Handler handler = server.route(target.getPath());
+        if (handler == null) {
+            reject(404, "Not found");
+            return;
+        }
+
+        boolean http11 = requestLine[2].equals("HTTP/1.1");
+        String connectionHeader = headers.getOrDefault("Connection", "").toLowerCase(Locale.ROOT);
+        boolean keepAlive = http11 && !connectionHeader.contains("close");
+        NioExchange next = new NioExchange(this, requestLine[0], target.getPath(), target.getRawQuery(),
+                headers, http11, keepAlive);
+        lock.lock();
+        try {
+            bodyRemaining = contentLength;
+            closeAfterResponse = !keepAlive;
+        } finally {
+            lock.unlock();
+        }
+        exchange = next;
+        if (contentLength > 0 && "100-continue".equalsIgnoreCase(headers.get("Expect"))) {
+            queue(ByteBuffer.wrap(CONTINUE));
+        }
+        if (!server.dispatch(next, handler)) {
+            exchange = null;
+            reject(503, "Server is shutting down");
+            return;
+        }
+        if (leftover.length > 0) consume(ByteBuffer.wrap(leftover));
+    }
+
+    private int indexOfHeadEnd() {
+        for (int i = 0; i + 3 < headLength; i++) {
+            if (head[i] == '\r' && head[i + 1] == '\n' && head[i + 2] == '\r' && head[i + 3] == '\n') return i;
+        }
+        return -1;
+    }
+
+    /** Answer a request the server refuses itself, then close the connection. */
+    private void reject(int status, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        String response = "HTTP/1.1 " + status + " " + NioExchange.reason(status) + "\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+        ByteBuffer bytes = ByteBuffer.allocate(response.length() + body.length);
+        bytes.put(response.getBytes(StandardCharsets.ISO_8859_1)).put(body).flip();
+        closing = true;
+        head = EMPTY;
+        headLength = 0;
+        queue(bytes);
+    }
+
+    private void finishExchange() {
+        boolean keepAlive;
+        boolean ended;
+        lock.lock();
+        try {
+            ended = inputEnded;
+            // A body the handler didn't wait for would be misread as the next request
+            keepAlive = !closeAfterResponse && bodyRemaining == 0;
+            responseDone = false;
+            body.clear();
+            bodyOffset = 0;
+            bodyBuffered = 0;
+            readPaused = false;
+        } finally {
+            lock.unlock();
+        }
+        exchange = null;
+        if (!keepAlive) {
+            close();
+            return;
+        }
+        lastActivity = System.nanoTime();
+        pipelineFull = false;
+        if (headLength > 0) {
+            try {
+                parseHead();
+            } catch (IOException e) {
+                close();
+                return;
+            }
+        }
+        // Half-closed: answer what was pipelined, then stop since no more requests can arrive
+        if (ended && exchange == null && !closing) close();
+    }
+
+    /** Queue bytes without waiting for room; the selector thread must never block. */
+    private void queue(ByteBuffer data) throws IOException {
+        lock.lock();
+        try {
+            out.add(data);
+            outBytes += data.remaining();
+            if (!writeInterest) flushLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // --- Handler threads (via NioExchange) ---
+
+    /** Read request body bytes, waiting for the client to send them. Returns -1 at the end of the body. */
+    int readBody(byte[] b, int off, int len) throws IOException {
+        lock.lock();
+        try {
+            while (body.isEmpty()) {
+                if (bodyRemaining == 0) return -1;
+                if (closed || failed || inputEnded) {
+                    throw new IOException("Connection closed before the request body was complete");
+                }
+                bodyReadable.await();
+            }
+            byte[] chunk = body.peek();
+            int n = Math.min(len, chunk.length - bodyOffset);
+            System.arraycopy(chunk, bodyOffset, b, off, n);
+            bodyOffset += n;
+            bodyBuffered -= n;
+            if (bodyOffset == chunk.length) {
+                body.poll();
+                bodyOffset = 0;
+            }
+            if (readPaused && bodyBuffered <= BODY_LOW_WATER) {
+                readPaused = false;
+                server.requestUpdate(this);
+            }
+            return n;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading the request body");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Send bytes to the client, waiting while the client is too far behind. */
+    void write(ByteBuffer data) throws IOException {
+        lock.lock();
+        try {
+            while (outBytes >= WRITE_HIGH_WATER && !closed && !failed) {
+                writable.await();
+            }
+            if (closed || failed) throw new IOException("Connection closed");
+            out.add(data);
+            outBytes += data.remaining();
+            if (!writeInterest) {
+                try {
+                    flushLocked();
+                } catch (IOException e) {
+                    failed = true;
+                    server.requestUpdate(this);
+                    throw e;
+                }
+                if (writeInterest) server.requestUpdate(this);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the response");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Fail the connection from a handler thread; blocked reads and writes throw, and the selector closes it. */
+    void abort() {
+        lock.lock();
+        try {
+            failed = true;
+            bodyReadable.signalAll();
+            writable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        server.requestUpdate(this);
+    }
+
+    /** The handler has finished the response; once it is flushed the next request can be read. */
+    void responseDone(boolean keepAlive) {
+        lock.lock();
+        try {
+            responseDone = true;
+            if (!keepAlive) closeAfterResponse = true;
+        } finally {
+            lock.unlock();
+        }
+        server.requestUpdate(this);
+    }
+
+    private void flushLocked() throws IOException {
+        while (!out.isEmpty()) {
+            ByteBuffer next = out.peek();
+            int n = channel.write(next);
+            if (n > 0) {
+                outBytes -= n;
+                lastActivity = System.nanoTime();
+            }
+            if (next.hasRemaining()) break;
+            out.poll();
+        }
+        writeInterest = !out.isEmpty();
+        if (outBytes < WRITE_HIGH_WATER) writable.signalAll();
+    }
+}
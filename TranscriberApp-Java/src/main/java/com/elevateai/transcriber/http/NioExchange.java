@@ -0,0 +1,294 @@
+package com.elevateai.transcriber.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link Exchange} of a {@link NioServer}. Used by one handler thread at a time, like the
+ * JDK's {@code HttpExchange}; the body streams hand bytes to and from the {@link NioConnection}.
+ */
+final class NioExchange implements Exchange {
+    private static final int BUFFER_SIZE = 8192;
+
+    private enum BodyMode { NONE, FIXED, CHUNKED, UNTIL_CLOSE }
+
+    private final NioConnection connection;
+    private final String method;
+    private final String path;
+    private final String query;
+    private final Map<String, String> requestHeaders;
+    private final boolean http11;
+    private boolean keepAlive;
+
+    private final Map<String, String> responseHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final RequestBody requestBody = new RequestBody();
+    private final ResponseBody responseBody = new ResponseBody();
+    private boolean headersSent;
+    private boolean closed;
+    private volatile boolean aborted;
+
+    NioExchange(NioConnection connection, String method, String path, String query,
+                Map<String, String> requestHeaders, boolean http11, boolean keepAlive) {
+        this.connection = connection;
+        this.method = method;
+        this.path = path;
+        this.query = query;
+        this.requestHeaders = requestHeaders;
+        this.http11 = http11;
+        this.keepAlive = keepAlive;
+    }
+
+    void run(Handler handler) {
+        try {
+            handler.handle(this);
+        } catch (Throwable e) {
+            NioServer.logError("HTTP handler failed for " + method + " " + path, e);
+            if (headersSent) {
+                // The response is in an unknown state; don't let the client reuse the connection
+                keepAlive = false;
+            } else {
+                responseHeaders.clear();
+                try {
+                    sendResponseHeaders(500, -1);
+                } catch (IOException ignored) {
+                    // Connection is already gone
+                }
+            }
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public String method() {
+        return method;
+    }
+
+    @Override
+    public String path() {
+        return path;
+    }
+
+    @Override
+    public String query() {
+        return query;
+    }
+
+    @Override
+    public String requestHeader(String name) {
+        return requestHeaders.get(name);
+    }
+
+    @Override
+    public InputStream requestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public void setResponseHeader(String name, String value) {
+        if (name.indexOf('\r') >= 0 || name.indexOf('\n') >= 0
+                || value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Line break in response header " + name);
+        }
+        responseHeaders.put(name, value);
+    }
+
+    @Override
+    public void sendResponseHeaders(int status, long length) throws IOException {
+        if (headersSent) throw new IOException("Response headers already sent");
+        headersSent = true;
+
+        boolean bodyAllowed = status >= 200 && status != 204 && status != 304;
+        BodyMode mode;
+        if (!bodyAllowed || length < 0) {
+            mode = BodyMode.NONE;
+            // HEAD responses may carry the Content-Length the GET would have
+            if (bodyAllowed) responseHeaders.putIfAbsent("Content-Length", "0");
+        } else if (length > 0) {
+            mode = BodyMode.FIXED;
+            responseHeaders.put("Content-Length", String.valueOf(length));
+        } else if (http11) {
+            mode = BodyMode.CHUNKED;
+            responseHeaders.put("Transfer-Encoding", "chunked");
+        } else {
+            mode = BodyMode.UNTIL_CLOSE;
+            keepAlive = false;
+        }
+        if ("HEAD".equalsIgnoreCase(method)) mode = BodyMode.NONE;
+        if (!keepAlive) responseHeaders.put("Connection", "close");
+        responseHeaders.putIfAbsent("Date", DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)));
+
+        StringBuilder head = new StringBuilder(256);
+        head.append("HTTP/1.1 ").append(status).append(' ').append(reason(status)).append("\r\n");
+        responseHeaders.forEach((name, value) -> head.append(name).append(": ").append(value).append("\r\n"));
+        head.append("\r\n");
+        responseBody.start(mode, length, head.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Override
+    public OutputStream responseBody() {
+        return responseBody;
+    }
+
+    @Override
+    public void close() {
+        if (closed || aborted) return;
+        closed = true;
+        requestBody.close();
+        try {
+            if (!headersSent) sendResponseHeaders(500, -1);
+            responseBody.close();
+        } catch (IOException e) {
+            keepAlive = false;
+        }
+        connection.responseDone(keepAlive);
+    }
+
+    @Override
+    public void abort() {
+        aborted = true;
+        connection.abort();
+    }
+
+    static String reason(int status) {
+        return switch (status) {
+            case 100 -> "Continue";
+            case 200 -> "OK";
+            case 202 -> "Accepted";
+            case 204 -> "No Content";
+            case 304 -> "Not Modified";
+            case 400 -> "Bad Request";
+            case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            case 409 -> "Conflict";
+            case 411 -> "Length Required";
+            case 413 -> "Content Too Large";
+            case 431 -> "Request Header Fields Too Large";
+            case 500 -> "Internal Server Error";
+            case 503 -> "Service Unavailable";
+            case 507 -> "Insufficient Storage";
+            default -> "";
+        };
+    }
+
+    private final class RequestBody extends InputStream {
+        private boolean closed;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Request body closed");
+            if (len == 0) return 0;
+            return connection.readBody(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            // Unread bytes are discarded by the connection, or it is closed if they haven't all arrived
+            closed = true;
+        }
+    }
+
+    private final class ResponseBody extends OutputStream {
+        private BodyMode mode;
+        private long remaining;
+        private byte[] head;
+        private byte[] buffer;
+        private int count;
+        private boolean closed;
+
+        void start(BodyMode mode, long length, byte[] head) throws IOException {
+            this.mode = mode;
+            this.remaining = length;
+            this.head = head;
+            // Streamed responses (SSE) go out at once; fixed ones wait to share a write with the body
+            if (mode == BodyMode.CHUNKED || mode == BodyMode.UNTIL_CLOSE) send(null, 0, 0);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Response body closed");
+            if (mode == null) throw new IOException("sendResponseHeaders() not called");
+            if (len == 0) return;
+            if (mode == BodyMode.NONE) {
+                if ("HEAD".equalsIgnoreCase(method)) return;
+                throw new IOException("Response has no body");
+            }
+            if (mode == BodyMode.FIXED) {
+                if (len > remaining) throw new IOException("Response body longer than its Content-Length");
+                remaining -= len;
+            }
+            if (len >= BUFFER_SIZE) {
+                flushBuffer();
+                send(b, off, len);
+                return;
+            }
+            if (buffer == null) buffer = new byte[BUFFER_SIZE];
+            if (count + len > buffer.length) flushBuffer();
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!closed) flushBuffer();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            flushBuffer();
+            if (mode == BodyMode.CHUNKED) {
+                connection.write(ByteBuffer.wrap("0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1)));
+            } else if (head != null) {
+                send(null, 0, 0);
+            }
+            if (mode == BodyMode.FIXED && remaining > 0) keepAlive = false;
+            buffer = null;
+        }
+
+        private void flushBuffer() throws IOException {
+            if (count == 0) return;
+            int n = count;
+            count = 0; // a failed send is not retried by close()
+            send(buffer, 0, n);
+        }
+
+        /** Frame and hand over {@code b[off, off + len)}, preceded by the response head if it is still pending. */
+        private void send(byte[] b, int off, int len) throws IOException {
+            byte[] chunkHeader = mode == BodyMode.CHUNKED && len > 0
+                    ? (Integer.toHexString(len) + "\r\n").getBytes(StandardCharsets.ISO_8859_1) : null;
+            int size = (head != null ? head.length : 0) + len
+                    + (chunkHeader != null ? chunkHeader.length + 2 : 0);
+            ByteBuffer data = ByteBuffer.allocate(size);
+            if (head != null) {
+                data.put(head);
+                head = null;
+            }
+            if (chunkHeader != null) data.put(chunkHeader);
+            if (len > 0) data.put(b, off, len);
+            if (chunkHeader != null) data.put((byte) '\r').put((byte) '\n');
+            data.flip();
+            connection.write(data);
+        }
+    }
+}
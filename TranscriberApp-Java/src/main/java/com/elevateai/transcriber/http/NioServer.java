@@ -0,0 +1,229 @@
+package com.elevateai.transcriber.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking HTTP/1.1 server. One selector thread accepts connections, parses request heads
+ * and moves bytes; handlers run on the supplied executor and see ordinary blocking streams
+ * backed by small per-connection queues (see {@link NioConnection}).
+ *
+ * <p>An idle connection, such as an SSE stream between events, holds no thread of its own in
+ * the server, only its socket and queued bytes. Accepting pauses at
+ * {@link ServerConfig#maxConnections()}, leaving further clients in the listen backlog.</p>
+ */
+final class NioServer implements Server {
+    private static final long TICK_MILLIS = 1000;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private record Context(String prefix, Handler handler) {
+    }
+
+    private final InetSocketAddress address;
+    private final ServerConfig config;
+    private final Executor executor;
+    private volatile List<Context> contexts = List.of();
+
+    private final Queue<NioConnection> updates = new ConcurrentLinkedQueue<>();
+    // Selector thread only
+    private final Set<NioConnection> connections = new HashSet<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    private Selector selector;
+    private ServerSocketChannel listener;
+    private SelectionKey acceptKey;
+    private Thread thread;
+    private volatile boolean running;
+
+    NioServer(InetSocketAddress address, ServerConfig config, Executor executor) {
+        this.address = address;
+        this.config = config;
+        this.executor = executor;
+    }
+
+    @Override
+    public synchronized void createContext(String pathPrefix, Handler handler) {
+        List<Context> updated = new ArrayList<>(contexts);
+        updated.add(new Context(pathPrefix, handler));
+        updated.sort(Comparator.comparingInt((Context c) -> c.prefix().length()).reversed());
+        contexts = List.copyOf(updated);
+    }
+
+    @Override
+    public void start() throws IOException {
+        selector = Selector.open();
+        listener = ServerSocketChannel.open();
+        listener.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        listener.bind(address, config.backlog());
+        listener.configureBlocking(false);
+        acceptKey = listener.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        // Not a daemon: like HttpServer's dispatcher, this thread keeps the process alive
+        thread = new Thread(this::run, "http-selector");
+        thread.start();
+    }
+
+    @Override
+    public int port() {
+        try {
+            return ((InetSocketAddress) listener.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return address.getPort();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    ServerConfig config() {
+        return config;
+    }
+
+    Handler route(String path) {
+        for (Context context : contexts) {
+            if (path.startsWith(context.prefix())) return context.handler();
+        }
+        return null;
+    }
+
+    /** Run a parsed request's handler off the selector thread. */
+    boolean dispatch(NioExchange exchange, Handler handler) {
+        try {
+            executor.execute(() -> exchange.run(handler));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /** Ask the selector thread to re-examine a connection. Called from handler threads. */
+    void requestUpdate(NioConnection connection) {
+        updates.add(connection);
+        selector.wakeup();
+    }
+
+    void closed(NioConnection connection) {
+        connections.remove(connection);
+        resumeAccepting();
+    }
+
+    private void run() {
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+        long nextSweep = System.nanoTime() + tickNanos;
+        try {
+            while (running) {
+                selector.select(TICK_MILLIS);
+                NioConnection updated;
+                while ((updated = updates.poll()) != null) {
+                    updated.onUpdate();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key == acceptKey) {
+                        accept();
+                    } else {
+                        ((NioConnection) key.attachment()).onReady(key.readyOps(), readBuffer);
+                    }
+                }
+                long now = System.nanoTime();
+                if (now - nextSweep >= 0) {
+                    closeIdle(now);
+                    resumeAccepting();
+                    nextSweep = now + tickNanos;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logError("HTTP server stopped", e);
+        } finally {
+            new ArrayList<>(connections).forEach(NioConnection::close);
+            try {
+                listener.close();
+                selector.close();
+            } catch (IOException ignored) {
+                // Shutting down
+            }
+        }
+    }
+
+    private void accept() {
+        while (connections.size() < config.maxConnections()) {
+            SocketChannel channel;
+            try {
+                channel = listener.accept();
+            } catch (IOException e) {
+                // Usually out of file descriptors (EMFILE/ENFILE). Retrying at once would spin, so
+                // stop accepting until the next tick; meanwhile clients wait in the listen backlog.
+                System.err.println("HTTP accept failed, pausing accepts for " + TICK_MILLIS + " ms: " + e);
+                acceptKey.interestOps(0);
+                return;
+            }
+            if (channel == null) break;
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                NioConnection connection = new NioConnection(this, channel);
+                connection.register(selector);
+                connections.add(connection);
+            } catch (IOException e) {
+                System.err.println("HTTP connection setup failed: " + e);
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Never got going
+                }
+            }
+        }
+        if (connections.size() >= config.maxConnections()) {
+            // Resumed by closed(); meanwhile new clients wait in the listen backlog
+            acceptKey.interestOps(0);
+        }
+    }
+
+    /** Accept again after a pause (connection limit or failed accept) once there is room. */
+    private void resumeAccepting() {
+        if (acceptKey.isValid() && acceptKey.interestOps() == 0 && connections.size() < config.maxConnections()) {
+            acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+        }
+    }
+
+    /** Report an error that has nowhere else to go, with its stack trace. */
+    static void logError(String message, Throwable e) {
+        System.err.println(message + ":");
+        e.printStackTrace();
+    }
+
+    private void closeIdle(long now) {
+        long idleNanos = config.idleTimeout().toNanos();
+        for (NioConnection connection : new ArrayList<>(connections)) {
+            connection.closeIfIdle(now, idleNanos);
+        }
+    }
+}
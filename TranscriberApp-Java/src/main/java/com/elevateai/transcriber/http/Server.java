@@ -0,0 +1,20 @@
+package com.elevateai.transcriber.http;
+
+import java.io.IOException;
+
+/**
+ * HTTP front end. Handlers are registered by path prefix; a request goes to the handler with
+ * the longest matching prefix, as with {@code com.sun.net.httpserver.HttpServer} contexts.
+ */
+public interface Server {
+
+    void createContext(String pathPrefix, Handler handler);
+
+    void start() throws IOException;
+
+    /** The bound port, useful when the server was created on port 0. */
+    int port();
+
+    /** Stop accepting connections and close the open ones. */
+    void stop();
+}
@@ -0,0 +1,50 @@
+package com.elevateai.transcriber.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * HTTP front-end settings, read from the environment by {@link #fromEnvironment(long)}:
+ * <ul>
+ *   <li>{@code ELEVATEAI_HTTP_SERVER}: {@code jdk} (default) for the {@code com.sun.net.httpserver}
+ *       implementation, which only honours the backlog, or {@code nio} for {@link NioServer}</li>
+ *   <li>{@code ELEVATEAI_HTTP_BACKLOG}: pending-connection queue length, default 1024</li>
+ *   <li>{@code ELEVATEAI_HTTP_MAX_CONNECTIONS}: open connections before accepting pauses,
+ *       default 10000; each is a file descriptor, so raise {@code ulimit -n} to match. Running
+ *       out of descriptors pauses accepting for a second rather than stopping the server.</li>
+ *   <li>{@code ELEVATEAI_HTTP_IDLE_TIMEOUT_SECONDS}: default 60</li>
+ *   <li>{@code ELEVATEAI_HTTP_MAX_HEADER_KB}: request line plus headers, default 16</li>
+ *   <li>{@code ELEVATEAI_HTTP_MAX_BODY_MB}: default the upload quota, since a larger upload
+ *       could never be stored</li>
+ * </ul>
+ */
+public record ServerConfig(String implementation, int backlog, int maxConnections, Duration idleTimeout,
+                           int maxHeaderBytes, long maxBodyBytes) {
+
+    /** @param defaultMaxBodyBytes used when {@code ELEVATEAI_HTTP_MAX_BODY_MB} is not set */
+    public static ServerConfig fromEnvironment(long defaultMaxBodyBytes) {
+        var env = System.getenv();
+        String maxBodyMb = env.get("ELEVATEAI_HTTP_MAX_BODY_MB");
+        return new ServerConfig(
+                env.getOrDefault("ELEVATEAI_HTTP_SERVER", "jdk").trim().toLowerCase(Locale.ROOT),
+                Integer.parseInt(env.getOrDefault("ELEVATEAI_HTTP_BACKLOG", "1024")),
+                Integer.parseInt(env.getOrDefault("ELEVATEAI_HTTP_MAX_CONNECTIONS", "10000")),
+                Duration.ofSeconds(Long.parseLong(env.getOrDefault("ELEVATEAI_HTTP_IDLE_TIMEOUT_SECONDS", "60"))),
+                Integer.parseInt(env.getOrDefault("ELEVATEAI_HTTP_MAX_HEADER_KB", "16")) * 1024,
+                maxBodyMb != null ? Long.parseLong(maxBodyMb) * 1024 * 1024 : defaultMaxBodyBytes);
+    }
+
+    /** Create (but don't start) the configured server. Handlers run on {@code executor}. */
+    public Server createServer(int port, Executor executor) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(port);
+        return switch (implementation) {
+            case "nio" -> new NioServer(address, this, executor);
+            case "jdk" -> new JdkServer(address, backlog, executor);
+            default -> throw new IllegalArgumentException("Unknown ELEVATEAI_HTTP_SERVER '" + implementation
+                    + "' (expected nio or jdk)");
+        };
+    }
+}
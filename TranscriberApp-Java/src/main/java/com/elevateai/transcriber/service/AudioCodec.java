@@ -0,0 +1,87 @@
+package com.elevateai.transcriber.service;
+
+import java.util.Locale;
+
+/**
+ * Wire format for audio streamed to ElevateAI. Audio is always decoded by ffmpeg to 16-bit
+ * little-endian PCM first (silence trimming works on that), then optionally re-encoded here.
+ *
+ * <p>The G.711 codecs send one byte per sample instead of two, halving upstream bandwidth.
+ * They are lossy and tuned for speech, and only usable against endpoints that accept them;
+ * {@link #PCM} is the default.</p>
+ */
+public enum AudioCodec {
+    PCM("pcm"),
+    MULAW("mulaw"),
+    ALAW("alaw");
+
+    private final String upstreamName;
+
+    AudioCodec(String upstreamName) {
+        this.upstreamName = upstreamName;
+    }
+
+    /** Value of the {@code codec} query parameter on the WebSocket URL. */
+    public String upstreamName() {
+        return upstreamName;
+    }
+
+    /**
+     * Parse a codec name as accepted by {@code /transcribe}: the upstream name or the enum
+     * constant, case-insensitive ({@code ulaw} is accepted for mu-law too).
+     */
+    public static AudioCodec parse(String name) {
+        String n = name.trim().toLowerCase(Locale.ROOT);
+        if (n.equals("ulaw")) return MULAW;
+        for (AudioCodec codec : values()) {
+            if (codec.upstreamName.equals(n) || codec.name().toLowerCase(Locale.ROOT).equals(n)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown codec '" + name + "' (expected pcm, mulaw or alaw)");
+    }
+
+    /**
+     * Encode {@code pcm[0, length)} in place. Each output byte is written at or before the
+     * sample it came from, so no second buffer is needed.
+     *
+     * @return the encoded length
+     */
+    public int encode(byte[] pcm, int length) {
+        if (this == PCM) return length;
+        int samples = length / 2;
+        for (int i = 0; i < samples; i++) {
+            int sample = (short) ((pcm[2 * i] & 0xFF) | (pcm[2 * i + 1] << 8));
+            pcm[i] = this == MULAW ? linearToMulaw(sample) : linearToAlaw(sample);
+        }
+        return samples;
+    }
+
+    // --- G.711 ---
+
+    private static final int MULAW_BIAS = 0x84;
+    private static final int MULAW_CLIP = 32635;
+
+    static byte linearToMulaw(int sample) {
+        int sign = sample < 0 ? 0x80 : 0;
+        int magnitude = Math.min(Math.abs(sample), MULAW_CLIP) + MULAW_BIAS;
+        // magnitude >= 0x84, so its top bit is somewhere in 7..14
+        int exponent = 31 - Integer.numberOfLeadingZeros(magnitude) - 7;
+        int mantissa = (magnitude >> (exponent + 3)) & 0x0F;
+        return (byte) ~(sign | (exponent << 4) | mantissa);
+    }
+
+    static byte linearToAlaw(int sample) {
+        int value = sample >> 3; // A-law works on 13-bit samples
+        int mask;
+        if (value >= 0) {
+            mask = 0xD5;
+        } else {
+            mask = 0x55;
+            value = -value - 1;
+        }
+        int segment = Math.max(0, 32 - Integer.numberOfLeadingZeros(value) - 5);
+        int encoded = (segment << 4) | ((segment < 2 ? value >> 1 : value >> segment) & 0x0F);
+        return (byte) (encoded ^ mask);
+    }
+}
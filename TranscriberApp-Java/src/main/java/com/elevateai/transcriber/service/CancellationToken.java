@@ -0,0 +1,79 @@
+package com.elevateai.transcriber.service;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cooperative cancellation for a single transcription.
+ *
+ * <p>Resources that can block (ffmpeg processes, WebSockets, pending futures) register a
+ * callback with {@link #onCancel(Runnable)} that releases them; loops poll
+ * {@link #throwIfCancelled()}. Cancelled work surfaces as {@link CancellationException}.</p>
+ */
+public class CancellationToken {
+    private final List<Runnable> callbacks = new CopyOnWriteArrayList<>();
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+
+    /** Cancel the work. Registered callbacks run once, on the calling thread. */
+    public void cancel() {
+        if (cancelled.getCount() == 0) return;
+        synchronized (this) {
+            if (cancelled.getCount() == 0) return;
+            cancelled.countDown();
+        }
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (RuntimeException ignored) {
+                // One failing release must not stop the others
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.getCount() == 0;
+    }
+
+    public void throwIfCancelled() {
+        if (isCancelled()) throw new CancellationException("Transcription cancelled");
+    }
+
+    /**
+     * Run {@code callback} on cancellation, or immediately if already cancelled. Close the
+     * returned registration once the resource is released normally; the callback runs at most
+     * once, and not at all after the registration is closed.
+     */
+    public Registration onCancel(Runnable callback) {
+        // cancel() may already be walking the list when the check below sees it cancelled
+        AtomicBoolean done = new AtomicBoolean();
+        Runnable once = () -> {
+            if (done.compareAndSet(false, true)) callback.run();
+        };
+        callbacks.add(once);
+        if (!isCancelled()) {
+            return () -> {
+                done.set(true);
+                callbacks.remove(once);
+            };
+        }
+        callbacks.remove(once);
+        once.run();
+        return () -> { };
+    }
+
+    /** Sleep that wakes up early, with {@link CancellationException}, when cancelled. */
+    public void sleep(long millis) throws InterruptedException {
+        if (cancelled.await(millis, TimeUnit.MILLISECONDS)) {
+            throwIfCancelled();
+        }
+    }
+
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
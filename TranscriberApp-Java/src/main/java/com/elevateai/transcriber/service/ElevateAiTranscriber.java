@@ -4,6 +4,8 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -11,22 +13,35 @@ import java.net.http.HttpResponse;
 import java.net.http.WebSocket;
 import java.net.http.WebSocketHandshakeException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Self-contained ElevateAI Real-Time transcription service.
  *
- * <p><b>To copy into another project, you need exactly 2 files:</b></p>
+ * <p><b>To copy into another project, you need these files:</b></p>
  * <ol>
  *   <li>{@code ElevateAiTranscriber.java} (this file)</li>
  *   <li>{@code TranscriptionResult.java} (result model)</li>
+ *   <li>{@code TranscriptionOptions.java} (per-request settings)</li>
+ *   <li>{@code SilenceTrimmer.java} (optional silence trimming)</li>
+ *   <li>{@code CancellationToken.java} (aborting in-flight work)</li>
+ *   <li>{@code AudioCodec.java} (upstream wire format)</li>
  * </ol>
  *
  * <p><b>Dependencies:</b> Gson ({@code com.google.code.gson:gson:2.11.0}), ffmpeg on PATH</p>
@@ -48,6 +63,21 @@ public class ElevateAiTranscriber {
     private static final int MAX_RETRIES = 3;
     private static final int SESSION_END_TIMEOUT_SECONDS = 10;
     private static final int CHUNK_SIZE = 8192;
+    private static final String API_HOST = "api.elevateai.com";
+    private static final int MAX_AUTO_SAMPLE_RATE = 16000;
+    private static final int MIN_AUTO_SAMPLE_RATE = 8000;
+    private static final Pattern FFMPEG_SAMPLE_RATE = Pattern.compile("Audio:[^\\n]*?(\\d+) Hz");
+
+    // One client for every session: creating an HttpClient per attempt spins up a new selector
+    // thread and throws away the TLS session cache that warmUp() primes
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    // Keyed by host: DNS answers and TLS sessions belong to the host, not the language endpoint
+    private static final Map<String, Warmup> WARMED = new ConcurrentHashMap<>();
+    // Successful lookups live 30 s in the JDK's DNS cache (networkaddress.cache.ttl), the
+    // shortest-lived of the state a warm-up primes
+    private static final long WARMUP_LIFETIME_NANOS = TimeUnit.SECONDS.toNanos(30);
 
     // =========================================================================
     // PUBLIC API — copy-paste entry points
@@ -66,12 +96,49 @@ public class ElevateAiTranscriber {
         return transcribeFile(apiToken, filePath, msg -> {}).getInteractionIdentifier();
     }
 
+    /**
+     * Pre-resolve the API host and complete a TLS handshake with it so later WebSocket
+     * handshakes resume the cached TLS session instead of paying a full one. The handshake
+     * carries a {@code HEAD /} with no token, so it never reaches the transcription API.
+     *
+     * <p>Safe to call often: a warm-up is reused until it is older than the JDK's DNS cache
+     * lifetime and repeated after that; a failed one is repeated on the next call.</p>
+     */
+    public static CompletableFuture<Void> warmUp() {
+        Warmup warmup = WARMED.compute(API_HOST, (host, previous) -> {
+            if (previous != null && !previous.isStale()) return previous;
+            return new Warmup(System.nanoTime(), CompletableFuture
+                    .runAsync(() -> {
+                        try {
+                            InetAddress.getAllByName(host);
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    })
+                    // Any HTTP status means DNS, TCP and TLS all succeeded
+                    .thenCompose(v -> HTTP_CLIENT.sendAsync(
+                            HttpRequest.newBuilder(URI.create("https://" + host + "/"))
+                                    .timeout(Duration.ofSeconds(10))
+                                    .method("HEAD", HttpRequest.BodyPublishers.noBody()).build(),
+                            HttpResponse.BodyHandlers.discarding()))
+                    .thenApply(resp -> null));
+        });
+        return warmup.done().exceptionally(e -> null);
+    }
+
+    private record Warmup(long startedNanos, CompletableFuture<Void> done) {
+        boolean isStale() {
+            if (!done.isDone()) return false;
+            return done.isCompletedExceptionally() || System.nanoTime() - startedNanos >= WARMUP_LIFETIME_NANOS;
+        }
+    }
+
     /**
      * Full entry point with progress callbacks and complete result.
      */
     public static TranscriptionResult transcribeFile(String apiToken, String filePath,
                                                      Consumer<String> onMessage) throws Exception {
-        return transcribeFile(apiToken, filePath, onMessage, "en", 16000);
+        return transcribeFile(apiToken, filePath, onMessage, new TranscriptionOptions());
     }
 
     /**
@@ -80,36 +147,91 @@ public class ElevateAiTranscriber {
     public static TranscriptionResult transcribeFile(String apiToken, String filePath,
                                                      Consumer<String> onMessage,
                                                      String languageTag, int sampleRate) throws Exception {
-        int channelCount = detectChannelCount(filePath);
-        onMessage.accept("Detected " + channelCount + " audio channel(s).");
+        return transcribeFile(apiToken, filePath, onMessage,
+                new TranscriptionOptions().languageTag(languageTag).sampleRate(sampleRate));
+    }
 
-        if (channelCount >= 2) {
-            return transcribeStereo(apiToken, filePath, onMessage, languageTag, sampleRate);
+    /**
+     * Full entry point with per-request options (silence trimming, etc.).
+     *
+     * @throws java.util.concurrent.CancellationException if {@link TranscriptionOptions#getCancellation()}
+     *         is cancelled; ffmpeg is killed and open WebSockets are aborted first
+     */
+    public static TranscriptionResult transcribeFile(String apiToken, String filePath,
+                                                     Consumer<String> onMessage,
+                                                     TranscriptionOptions options) throws Exception {
+        // Overlap DNS + TLS setup with the ffmpeg decode below
+        warmUp();
+
+        options.getCancellation().throwIfCancelled();
+        SourceFormat source = probeSource(filePath, options.getCancellation());
+        onMessage.accept("Detected " + source.channels() + " audio channel(s)"
+                + (source.sampleRate() > 0 ? " at " + source.sampleRate() + " Hz." : "."));
+        int sampleRate = chooseSampleRate(options.getSampleRate(), source.sampleRate());
+
+        if (source.channels() >= 2) {
+            return transcribeStereo(apiToken, filePath, onMessage, options, sampleRate);
         } else {
-            return transcribeMono(apiToken, filePath, onMessage, languageTag, sampleRate);
+            return transcribeMono(apiToken, filePath, onMessage, options, sampleRate);
         }
     }
 
+    /**
+     * An explicit rate always wins. Otherwise use whichever of 8 kHz and 16 kHz is nearer the
+     * source rate (16 kHz on a tie, so nothing audible is cut off): those are the rates the
+     * upstream models take, upsampling adds bytes but no information, and speech recognition
+     * gains nothing above 16 kHz. Rates in between, such as 11025 or 12000, are resampled.
+     */
+    static int chooseSampleRate(int requested, int sourceRate) {
+        if (requested > 0) return requested;
+        if (sourceRate <= 0) return MAX_AUTO_SAMPLE_RATE;
+        return sourceRate - MIN_AUTO_SAMPLE_RATE < MAX_AUTO_SAMPLE_RATE - sourceRate
+                ? MIN_AUTO_SAMPLE_RATE : MAX_AUTO_SAMPLE_RATE;
+    }
+
     private static TranscriptionResult transcribeMono(String apiToken, String filePath,
                                                       Consumer<String> onMessage,
-                                                      String languageTag, int sampleRate) throws Exception {
+                                                      TranscriptionOptions options,
+                                                      int sampleRate) throws Exception {
+        String languageTag = options.getLanguageTag();
+        AudioCodec codec = options.getCodec();
+        CancellationToken cancel = options.getCancellation();
         onMessage.accept("Converting audio to PCM (" + sampleRate + " Hz, mono, 16-bit)...");
-        byte[] pcmData = convertToPcm(filePath, sampleRate, -1);
+        byte[] pcmData = convertToPcm(filePath, sampleRate, -1, cancel);
         onMessage.accept("Conversion complete. PCM size: " + String.format("%,d", pcmData.length) + " bytes");
 
+        int pcmLength = pcmData.length;
+        SilenceTrimmer.OffsetMap offsetMap = null;
+        if (options.getSilenceTrim() != null) {
+            offsetMap = SilenceTrimmer.detect(options.getSilenceTrim(), sampleRate, pcmData);
+            pcmLength = SilenceTrimmer.compact(pcmData, pcmLength, offsetMap);
+            reportTrim(offsetMap, pcmData.length, pcmLength, onMessage);
+        }
+        // Encode after trimming, which needs linear samples
+        if (codec != AudioCodec.PCM) {
+            int pcmBytes = pcmLength;
+            pcmLength = codec.encode(pcmData, pcmLength);
+            reportEncode(codec, pcmBytes, pcmLength, onMessage);
+        }
+
         Exception lastError = null;
         for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
+            cancel.throwIfCancelled();
             String sessionId = UUID.randomUUID().toString();
             onMessage.accept("Attempt " + attempt + "/" + MAX_RETRIES + " — Session ID: " + sessionId);
 
             try {
-                return doTranscribeMono(apiToken, pcmData, sessionId, onMessage, languageTag, sampleRate);
+                TranscriptionResult result = doTranscribeMono(apiToken, pcmData, pcmLength, sessionId,
+                        onMessage, languageTag, sampleRate, codec, cancel);
+                return offsetMap != null ? offsetMap.toOriginalTime(result) : result;
             } catch (Exception e) {
+                // Failures caused by cancellation (aborted sockets, killed ffmpeg) are not retried
+                cancel.throwIfCancelled();
                 lastError = e;
                 onMessage.accept("Attempt " + attempt + " failed: " + e.getMessage());
                 if (attempt < MAX_RETRIES) {
                     onMessage.accept("Waiting 2s before retry...");
-                    Thread.sleep(2000);
+                    cancel.sleep(2000);
                     onMessage.accept("Retrying with new session...");
                 }
             }
@@ -117,56 +239,90 @@ public class ElevateAiTranscriber {
         throw new Exception("Failed after " + MAX_RETRIES + " attempts: " + lastError.getMessage(), lastError);
     }
 
-    private static TranscriptionResult doTranscribeMono(String apiToken, byte[] pcmData, String sessionId,
+    private static TranscriptionResult doTranscribeMono(String apiToken, byte[] pcmData, int pcmLength,
+                                                        String sessionId,
                                                         Consumer<String> onMessage,
-                                                        String languageTag, int sampleRate) throws Exception {
-        URI uri = buildUri(languageTag, sessionId, 1, 0, "Agent", sampleRate);
+                                                        String languageTag, int sampleRate, AudioCodec codec,
+                                                        CancellationToken cancel) throws Exception {
+        URI uri = buildUri(languageTag, sessionId, 1, 0, "Agent", sampleRate, codec);
         onMessage.accept("Connecting to ElevateAI WebSocket...");
 
-        HttpClient client = HttpClient.newHttpClient();
         CompletableFuture<String> interactionIdFuture = new CompletableFuture<>();
         CompletableFuture<String> sessionEndedJsonFuture = new CompletableFuture<>();
 
-        WebSocket ws = connectWebSocket(client, uri, apiToken,
-                new SessionListener(onMessage, interactionIdFuture, sessionEndedJsonFuture), onMessage);
+        CompletableFuture<WebSocket> connecting = connectWebSocket(uri, apiToken,
+                new SessionListener(onMessage, interactionIdFuture, sessionEndedJsonFuture));
 
-        onMessage.accept("WebSocket connected.");
-        streamAudio(ws, pcmData, onMessage);
+        CancellationToken.Registration registration = cancel.onCancel(() -> abortSession(sessionEndedJsonFuture, connecting));
+        try {
+            WebSocket ws = awaitWebSocket(uri, apiToken, connecting, onMessage);
 
-        onMessage.accept("All audio sent. Sending sessionEnd...");
-        ws.sendText("{\"type\":\"sessionEnd\"}", true).join();
+            onMessage.accept("WebSocket connected.");
+            streamAudio(ws, pcmData, pcmLength, onMessage, cancel);
 
-        onMessage.accept("Waiting for sessionEnded (timeout: " + SESSION_END_TIMEOUT_SECONDS + "s)...");
-        String endedJson = sessionEndedJsonFuture.get(SESSION_END_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            onMessage.accept("All audio sent. Sending sessionEnd...");
+            ws.sendText("{\"type\":\"sessionEnd\"}", true).join();
 
-        return TranscriptionResult.fromSessionEnded(endedJson);
+            onMessage.accept("Waiting for sessionEnded (timeout: " + SESSION_END_TIMEOUT_SECONDS + "s)...");
+            String endedJson = sessionEndedJsonFuture.get(SESSION_END_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            return TranscriptionResult.fromSessionEnded(endedJson);
+        } finally {
+            registration.close();
+        }
     }
 
     private static TranscriptionResult transcribeStereo(String apiToken, String filePath,
                                                         Consumer<String> onMessage,
-                                                        String languageTag, int sampleRate) throws Exception {
+                                                        TranscriptionOptions options,
+                                                        int sampleRate) throws Exception {
+        String languageTag = options.getLanguageTag();
+        AudioCodec codec = options.getCodec();
+        CancellationToken cancel = options.getCancellation();
         onMessage.accept("Converting channel 0 (Agent) to PCM...");
-        byte[] pcmChannel0 = convertToPcm(filePath, sampleRate, 0);
+        byte[] pcmChannel0 = convertToPcm(filePath, sampleRate, 0, cancel);
         onMessage.accept("Channel 0 PCM size: " + String.format("%,d", pcmChannel0.length) + " bytes");
 
         onMessage.accept("Converting channel 1 (Customer) to PCM...");
-        byte[] pcmChannel1 = convertToPcm(filePath, sampleRate, 1);
+        byte[] pcmChannel1 = convertToPcm(filePath, sampleRate, 1, cancel);
         onMessage.accept("Channel 1 PCM size: " + String.format("%,d", pcmChannel1.length) + " bytes");
 
+        int pcmLength0 = pcmChannel0.length;
+        int pcmLength1 = pcmChannel1.length;
+        SilenceTrimmer.OffsetMap offsetMap = null;
+        if (options.getSilenceTrim() != null) {
+            // A region is only cut when both channels are silent, so the channels stay aligned
+            offsetMap = SilenceTrimmer.detect(options.getSilenceTrim(), sampleRate, pcmChannel0, pcmChannel1);
+            pcmLength0 = SilenceTrimmer.compact(pcmChannel0, pcmLength0, offsetMap);
+            pcmLength1 = SilenceTrimmer.compact(pcmChannel1, pcmLength1, offsetMap);
+            reportTrim(offsetMap, pcmChannel0.length + pcmChannel1.length, pcmLength0 + pcmLength1, onMessage);
+        }
+        if (codec != AudioCodec.PCM) {
+            int pcmBytes = pcmLength0 + pcmLength1;
+            pcmLength0 = codec.encode(pcmChannel0, pcmLength0);
+            pcmLength1 = codec.encode(pcmChannel1, pcmLength1);
+            reportEncode(codec, pcmBytes, pcmLength0 + pcmLength1, onMessage);
+        }
+
         Exception lastError = null;
         for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
+            cancel.throwIfCancelled();
             String sessionId = UUID.randomUUID().toString();
             onMessage.accept("Attempt " + attempt + "/" + MAX_RETRIES + " — Session ID: " + sessionId);
 
             try {
-                return doTranscribeStereo(apiToken, pcmChannel0, pcmChannel1, sessionId,
-                        onMessage, languageTag, sampleRate);
+                TranscriptionResult result = doTranscribeStereo(apiToken,
+                        pcmChannel0, pcmLength0, pcmChannel1, pcmLength1, sessionId,
+                        onMessage, languageTag, sampleRate, codec, cancel);
+                return offsetMap != null ? offsetMap.toOriginalTime(result) : result;
             } catch (Exception e) {
+                // Failures caused by cancellation (aborted sockets, killed ffmpeg) are not retried
+                cancel.throwIfCancelled();
                 lastError = e;
                 onMessage.accept("Attempt " + attempt + " failed: " + e.getMessage());
                 if (attempt < MAX_RETRIES) {
                     onMessage.accept("Waiting 2s before retry...");
-                    Thread.sleep(2000);
+                    cancel.sleep(2000);
                     onMessage.accept("Retrying with new session...");
                 }
             }
@@ -175,70 +331,99 @@ public class ElevateAiTranscriber {
     }
 
     private static TranscriptionResult doTranscribeStereo(String apiToken,
-                                                          byte[] pcmChannel0, byte[] pcmChannel1,
+                                                          byte[] pcmChannel0, int pcmLength0,
+                                                          byte[] pcmChannel1, int pcmLength1,
                                                           String sessionId, Consumer<String> onMessage,
-                                                          String languageTag, int sampleRate) throws Exception {
-        URI uri0 = buildUri(languageTag, sessionId, 2, 0, "Agent", sampleRate);
-        URI uri1 = buildUri(languageTag, sessionId, 2, 1, "Customer", sampleRate);
+                                                          String languageTag, int sampleRate, AudioCodec codec,
+                                                          CancellationToken cancel) throws Exception {
+        URI uri0 = buildUri(languageTag, sessionId, 2, 0, "Agent", sampleRate, codec);
+        URI uri1 = buildUri(languageTag, sessionId, 2, 1, "Customer", sampleRate, codec);
 
-        HttpClient client = HttpClient.newHttpClient();
         CompletableFuture<String> interactionIdFuture = new CompletableFuture<>();
         CompletableFuture<String> sessionEndedJsonFuture = new CompletableFuture<>();
 
         // Both listeners share the same futures — sessionStarted/sessionEnded arrive on both,
-        // but we only need to capture once
-        onMessage.accept("Connecting channel 0 (Agent)...");
-        WebSocket ws0 = connectWebSocket(client, uri0, apiToken,
-                new SessionListener(onMessage, interactionIdFuture, sessionEndedJsonFuture), onMessage);
-        onMessage.accept("Channel 0 connected.");
-
-        onMessage.accept("Connecting channel 1 (Customer)...");
-        WebSocket ws1 = connectWebSocket(client, uri1, apiToken,
-                new SessionListener(onMessage, interactionIdFuture, sessionEndedJsonFuture), onMessage);
-        onMessage.accept("Channel 1 connected.");
-
-        // Stream both channels in parallel
-        CompletableFuture<Void> send0 = CompletableFuture.runAsync(() -> {
+        // but we only need to capture once. Both handshakes run concurrently.
+        onMessage.accept("Connecting channels 0 (Agent) and 1 (Customer)...");
+        CompletableFuture<WebSocket> connect0 = connectWebSocket(uri0, apiToken,
+                new SessionListener(onMessage, interactionIdFuture, sessionEndedJsonFuture));
+        CompletableFuture<WebSocket> connect1 = connectWebSocket(uri1, apiToken,
+                new SessionListener(onMessage, interactionIdFuture, sessionEndedJsonFuture));
+
+        CancellationToken.Registration registration = cancel.onCancel(() -> abortSession(sessionEndedJsonFuture, connect0, connect1));
+        try {
+            WebSocket ws0;
+            WebSocket ws1;
             try {
-                onMessage.accept("Streaming channel 0 audio...");
-                streamAudio(ws0, pcmChannel0, msg -> {});
-                onMessage.accept("Channel 0 audio sent.");
+                ws0 = awaitWebSocket(uri0, apiToken, connect0, onMessage);
+                onMessage.accept("Channel 0 connected.");
+                ws1 = awaitWebSocket(uri1, apiToken, connect1, onMessage);
+                onMessage.accept("Channel 1 connected.");
             } catch (Exception e) {
-                throw new RuntimeException(e);
+                // Don't leave the other half of the session open
+                connect0.thenAccept(WebSocket::abort);
+                connect1.thenAccept(WebSocket::abort);
+                throw e;
             }
-        });
 
-        CompletableFuture<Void> send1 = CompletableFuture.runAsync(() -> {
-            try {
-                onMessage.accept("Streaming channel 1 audio...");
-                streamAudio(ws1, pcmChannel1, msg -> {});
-                onMessage.accept("Channel 1 audio sent.");
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        });
+            // Stream both channels in parallel
+            CompletableFuture<Void> send0 = CompletableFuture.runAsync(() -> {
+                try {
+                    onMessage.accept("Streaming channel 0 audio...");
+                    streamAudio(ws0, pcmChannel0, pcmLength0, msg -> {}, cancel);
+                    onMessage.accept("Channel 0 audio sent.");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
 
-        // Wait for both channels to finish streaming
-        CompletableFuture.allOf(send0, send1).join();
+            CompletableFuture<Void> send1 = CompletableFuture.runAsync(() -> {
+                try {
+                    onMessage.accept("Streaming channel 1 audio...");
+                    streamAudio(ws1, pcmChannel1, pcmLength1, msg -> {}, cancel);
+                    onMessage.accept("Channel 1 audio sent.");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
 
-        // sessionEnd only needs to be sent on one channel
-        onMessage.accept("All audio sent. Sending sessionEnd...");
-        ws0.sendText("{\"type\":\"sessionEnd\"}", true).join();
+            // Wait for both channels to finish streaming
+            CompletableFuture.allOf(send0, send1).join();
 
-        onMessage.accept("Waiting for sessionEnded (timeout: " + SESSION_END_TIMEOUT_SECONDS + "s)...");
-        String endedJson = sessionEndedJsonFuture.get(SESSION_END_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            // sessionEnd only needs to be sent on one channel
+            onMessage.accept("All audio sent. Sending sessionEnd...");
+            ws0.sendText("{\"type\":\"sessionEnd\"}", true).join();
 
-        return TranscriptionResult.fromSessionEnded(endedJson);
+            onMessage.accept("Waiting for sessionEnded (timeout: " + SESSION_END_TIMEOUT_SECONDS + "s)...");
+            String endedJson = sessionEndedJsonFuture.get(SESSION_END_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            return TranscriptionResult.fromSessionEnded(endedJson);
+        } finally {
+            registration.close();
+        }
+    }
+
+    private static CompletableFuture<WebSocket> connectWebSocket(URI uri, String apiToken,
+                                                                 WebSocket.Listener listener) {
+        return HTTP_CLIENT.newWebSocketBuilder()
+                .header("X-API-TOKEN", apiToken)
+                .buildAsync(uri, listener);
+    }
+
+    /** Abort the sockets of a session (open or still connecting) and fail the pending wait. */
+    @SafeVarargs
+    private static void abortSession(CompletableFuture<String> sessionEndedJsonFuture,
+                                     CompletableFuture<WebSocket>... connecting) {
+        sessionEndedJsonFuture.completeExceptionally(new CancellationException("Transcription cancelled"));
+        for (CompletableFuture<WebSocket> c : connecting) {
+            c.thenAccept(WebSocket::abort);
+        }
     }
 
-    private static WebSocket connectWebSocket(HttpClient client, URI uri, String apiToken,
-                                                 WebSocket.Listener listener,
-                                                 Consumer<String> onMessage) throws Exception {
+    private static WebSocket awaitWebSocket(URI uri, String apiToken, CompletableFuture<WebSocket> connecting,
+                                            Consumer<String> onMessage) throws Exception {
         try {
-            return client.newWebSocketBuilder()
-                    .header("X-API-TOKEN", apiToken)
-                    .buildAsync(uri, listener)
-                    .join();
+            return connecting.join();
         } catch (CompletionException ce) {
             Throwable cause = ce.getCause();
             if (cause instanceof WebSocketHandshakeException wse) {
@@ -247,7 +432,7 @@ public class ElevateAiTranscriber {
                 String diagBody = "";
                 try {
                     URI httpsUri = URI.create(uri.toString().replaceFirst("^wss://", "https://"));
-                    var diagResp = client.send(
+                    var diagResp = HTTP_CLIENT.send(
                             HttpRequest.newBuilder(httpsUri)
                                     .header("X-API-TOKEN", apiToken)
                                     .GET().build(),
@@ -266,54 +451,115 @@ public class ElevateAiTranscriber {
 
     private static URI buildUri(String languageTag, String sessionId,
                                 int channels, int channelIndex, String participantRole,
-                                int sampleRate) {
+                                int sampleRate, AudioCodec codec) {
         return URI.create(
-                "wss://api.elevateai.com/v1/audio/" + languageTag + "/default"
+                "wss://" + API_HOST + "/v1/audio/" + languageTag + "/default"
                         + "?session_identifier=" + sessionId
                         + "&channels=" + channels
                         + "&channel_index=" + channelIndex
                         + "&participant_role=" + participantRole
-                        + "&codec=pcm&sample_rate=" + sampleRate);
+                        + "&codec=" + codec.upstreamName()
+                        + "&sample_rate=" + sampleRate);
     }
 
-    private static void streamAudio(WebSocket ws, byte[] pcmData, Consumer<String> onMessage) {
-        int totalChunks = (pcmData.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    private static void streamAudio(WebSocket ws, byte[] pcmData, int length, Consumer<String> onMessage,
+                                    CancellationToken cancel) {
+        int totalChunks = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
         onMessage.accept("Streaming " + totalChunks + " audio chunks...");
 
-        for (int offset = 0; offset < pcmData.length; offset += CHUNK_SIZE) {
-            int remaining = Math.min(CHUNK_SIZE, pcmData.length - offset);
+        for (int offset = 0; offset < length; offset += CHUNK_SIZE) {
+            cancel.throwIfCancelled();
+            int remaining = Math.min(CHUNK_SIZE, length - offset);
             ByteBuffer buffer = ByteBuffer.wrap(pcmData, offset, remaining);
             ws.sendBinary(buffer, true).join();
         }
     }
 
+    private static void reportTrim(SilenceTrimmer.OffsetMap offsetMap, int originalBytes, int trimmedBytes,
+                                   Consumer<String> onMessage) {
+        onMessage.accept("Silence trimming: removed " + String.format("%.1f", offsetMap.removedMillis() / 1000.0)
+                + "s across " + offsetMap.cutCount() + " gap(s). PCM size: "
+                + String.format("%,d", originalBytes) + " -> " + String.format("%,d", trimmedBytes) + " bytes");
+    }
+
+    private static void reportEncode(AudioCodec codec, int pcmBytes, int encodedBytes,
+                                     Consumer<String> onMessage) {
+        onMessage.accept("Encoded as " + codec.upstreamName() + ": "
+                + String.format("%,d", pcmBytes) + " -> " + String.format("%,d", encodedBytes) + " bytes");
+    }
+
     // --- ffmpeg helpers ---
 
-    private static int detectChannelCount(String inputPath) throws Exception {
+    /** Channel count (1 or 2) and sample rate of the source; a rate of 0 means unknown. */
+    private record SourceFormat(int channels, int sampleRate) {
+    }
+
+    private static SourceFormat probeSource(String inputPath, CancellationToken cancel) throws Exception {
+        // WAV files carry the format in their header — no need to spawn ffmpeg
+        SourceFormat wav = readWavFormat(inputPath);
+        if (wav != null) {
+            return wav;
+        }
+
         // Use ffmpeg -i to detect channels (ffprobe may not be available)
         ProcessBuilder pb = new ProcessBuilder("ffmpeg", "-i", inputPath, "-hide_banner");
         pb.redirectErrorStream(true);
         Process proc = pb.start();
         String output;
+        CancellationToken.Registration registration = cancel.onCancel(proc::destroyForcibly);
         try (var is = proc.getInputStream()) {
             output = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            proc.waitFor(); // exit code will be non-zero (no output specified) — that's expected
+        } finally {
+            registration.close();
         }
-        proc.waitFor(); // exit code will be non-zero (no output specified) — that's expected
+        cancel.throwIfCancelled();
 
-        // Look for "stereo" or "N channels" in the stream info line
+        // Look for "stereo" or "N channels" and "N Hz" in the stream info line
         // e.g. "Stream #0:0: Audio: aac, 44100 Hz, stereo, fltp"
         // e.g. "Stream #0:0: Audio: pcm_s16le, 16000 Hz, 2 channels, s16"
-        if (output.contains("stereo") || output.contains("2 channels")) {
-            return 2;
+        int channels = output.contains("stereo") || output.contains("2 channels") ? 2 : 1;
+        Matcher rate = FFMPEG_SAMPLE_RATE.matcher(output);
+        return new SourceFormat(channels, rate.find() ? Integer.parseInt(rate.group(1)) : 0);
+    }
+
+    /**
+     * Read the channel count and sample rate from a RIFF/WAVE header in the first few KB of the
+     * file. Returns null if the file is not a WAV file we can parse.
+     */
+    private static SourceFormat readWavFormat(String inputPath) {
+        try (InputStream in = Files.newInputStream(Path.of(inputPath))) {
+            ByteBuffer header = ByteBuffer.wrap(in.readNBytes(4096)).order(ByteOrder.LITTLE_ENDIAN);
+            int length = header.limit();
+            if (length < 12) return null;
+            if (header.getInt(0) != 0x46464952 || header.getInt(8) != 0x45564157) { // "RIFF", "WAVE"
+                return null;
+            }
+            int pos = 12;
+            while (pos + 8 <= length) {
+                int chunkId = header.getInt(pos);
+                int chunkSize = header.getInt(pos + 4);
+                if (chunkId == 0x20746D66 && pos + 16 <= length) { // "fmt "
+                    int channels = header.getShort(pos + 10) & 0xFFFF;
+                    int sampleRate = header.getInt(pos + 12);
+                    if (channels == 0) return null;
+                    return new SourceFormat(channels >= 2 ? 2 : 1, Math.max(0, sampleRate));
+                }
+                if (chunkSize < 0) return null;
+                pos += 8 + chunkSize + (chunkSize & 1);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Fall back to ffmpeg
         }
-        return 1;
+        return null;
     }
 
     /**
      * Convert audio to raw PCM. If channelIndex is -1, downmix all channels to mono.
      * If channelIndex is 0 or 1, extract that specific channel from a stereo file.
      */
-    private static byte[] convertToPcm(String inputPath, int sampleRate, int channelIndex) throws Exception {
+    private static byte[] convertToPcm(String inputPath, int sampleRate, int channelIndex,
+                                       CancellationToken cancel) throws Exception {
         var cmd = new ArrayList<String>();
         cmd.add("ffmpeg");
         cmd.add("-i");
@@ -340,11 +586,16 @@ public class ElevateAiTranscriber {
         Process proc = pb.start();
 
         byte[] pcmData;
+        int exitCode;
+        CancellationToken.Registration registration = cancel.onCancel(proc::destroyForcibly);
         try (var stdout = proc.getInputStream()) {
             pcmData = stdout.readAllBytes();
+            exitCode = proc.waitFor();
+        } finally {
+            registration.close();
         }
+        cancel.throwIfCancelled();
 
-        int exitCode = proc.waitFor();
         if (exitCode != 0) {
             byte[] errBytes;
             try (var stderr = proc.getErrorStream()) {
@@ -0,0 +1,198 @@
+package com.elevateai.transcriber.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Energy-based voice activity detection for 16-bit little-endian mono PCM.
+ *
+ * <p>Long silences are compressed down to {@link Options#keepSilenceMs()} before the audio
+ * is streamed, and the returned {@link OffsetMap} translates segment offsets reported against
+ * the trimmed stream back to original-recording time.</p>
+ *
+ * <pre>{@code
+ * OffsetMap map = SilenceTrimmer.detect(SilenceTrimmer.Options.DEFAULT, 16000, pcm);
+ * int length = SilenceTrimmer.compact(pcm, pcm.length, map);
+ * // ... stream pcm[0, length) ...
+ * TranscriptionResult original = map.toOriginalTime(result);
+ * }</pre>
+ */
+public final class SilenceTrimmer {
+
+    private static final int FRAME_MS = 10;
+
+    private SilenceTrimmer() {
+    }
+
+    /**
+     * @param thresholdDbfs frame RMS level (dBFS) below which a frame counts as silent
+     * @param minSilenceMs  shortest silence that gets compressed
+     * @param keepSilenceMs silence left in place of a compressed run, split across both edges
+     */
+    public record Options(double thresholdDbfs, int minSilenceMs, int keepSilenceMs) {
+        public static final Options DEFAULT = new Options(-45.0, 700, 200);
+
+        public Options {
+            if (minSilenceMs <= 0 || keepSilenceMs < 0 || keepSilenceMs >= minSilenceMs) {
+                throw new IllegalArgumentException("Require 0 <= keepSilenceMs < minSilenceMs, got keep="
+                        + keepSilenceMs + ", min=" + minSilenceMs);
+            }
+        }
+    }
+
+    /**
+     * Find silent runs shared by every channel. Channels are cut at the same sample positions
+     * so that stereo sessions stay time-aligned after trimming.
+     */
+    public static OffsetMap detect(Options options, int sampleRate, byte[]... channels) {
+        int frameSamples = Math.max(1, sampleRate * FRAME_MS / 1000);
+        int totalSamples = 0;
+        for (byte[] pcm : channels) {
+            totalSamples = Math.max(totalSamples, pcm.length / 2);
+        }
+        int frameCount = (totalSamples + frameSamples - 1) / frameSamples;
+
+        double amplitude = 32768.0 * Math.pow(10.0, options.thresholdDbfs() / 20.0);
+        double thresholdSq = amplitude * amplitude;
+        int minSilenceFrames = (options.minSilenceMs() + FRAME_MS - 1) / FRAME_MS;
+        int keepHalfSamples = (int) ((long) options.keepSilenceMs() * sampleRate / 2000);
+
+        OffsetMap map = new OffsetMap(sampleRate);
+        int runStart = -1;
+        for (int frame = 0; frame <= frameCount; frame++) {
+            boolean silent = frame < frameCount && isSilentFrame(channels, frame, frameSamples, thresholdSq);
+            if (silent) {
+                if (runStart < 0) runStart = frame;
+                continue;
+            }
+            if (runStart >= 0 && frame - runStart >= minSilenceFrames) {
+                int cutStart = runStart * frameSamples + keepHalfSamples;
+                int cutEnd = Math.min(frame * frameSamples, totalSamples) - keepHalfSamples;
+                if (cutEnd > cutStart) {
+                    map.addCut(cutStart, cutEnd);
+                }
+            }
+            runStart = -1;
+        }
+        return map;
+    }
+
+    /**
+     * Remove the cut regions from {@code pcm} in place. No buffers are allocated; kept audio is
+     * shifted down within the same array.
+     *
+     * @return number of valid bytes at the front of {@code pcm} after compaction
+     */
+    public static int compact(byte[] pcm, int length, OffsetMap map) {
+        int write = 0;
+        int read = 0;
+        for (int i = 0; i < map.size; i++) {
+            int cutStart = Math.min(map.originalStart[i] * 2, length);
+            int cutEnd = Math.min(map.originalEnd[i] * 2, length);
+            if (cutStart > read) {
+                System.arraycopy(pcm, read, pcm, write, cutStart - read);
+                write += cutStart - read;
+            }
+            read = Math.max(read, cutEnd);
+        }
+        if (length > read) {
+            System.arraycopy(pcm, read, pcm, write, length - read);
+            write += length - read;
+        }
+        return write;
+    }
+
+    private static boolean isSilentFrame(byte[][] channels, int frame, int frameSamples, double thresholdSq) {
+        for (byte[] pcm : channels) {
+            int from = frame * frameSamples * 2;
+            int to = Math.min(from + frameSamples * 2, pcm.length - 1);
+            long sumSq = 0;
+            int samples = 0;
+            for (int i = from; i < to; i += 2) {
+                int sample = (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8));
+                sumSq += (long) sample * sample;
+                samples++;
+            }
+            // Compare mean energy against threshold without dividing per frame; the last frame
+            // may be short, so scale by the samples actually read
+            if (sumSq > thresholdSq * samples) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records which sample ranges were removed and maps trimmed-stream time back to
+     * original-recording time.
+     */
+    public static final class OffsetMap {
+        private final int sampleRate;
+        private int[] originalStart = new int[8];
+        private int[] originalEnd = new int[8];
+        /** Position of each cut in the trimmed stream, in samples. */
+        private int[] trimmedAt = new int[8];
+        /** Samples removed up to and including each cut. */
+        private long[] removedThrough = new long[8];
+        private int size;
+
+        OffsetMap(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        private void addCut(int start, int end) {
+            if (size == originalStart.length) {
+                int n = size * 2;
+                originalStart = Arrays.copyOf(originalStart, n);
+                originalEnd = Arrays.copyOf(originalEnd, n);
+                trimmedAt = Arrays.copyOf(trimmedAt, n);
+                removedThrough = Arrays.copyOf(removedThrough, n);
+            }
+            long removedBefore = size == 0 ? 0 : removedThrough[size - 1];
+            originalStart[size] = start;
+            originalEnd[size] = end;
+            trimmedAt[size] = (int) (start - removedBefore);
+            removedThrough[size] = removedBefore + (end - start);
+            size++;
+        }
+
+        public int cutCount() {
+            return size;
+        }
+
+        public long removedMillis() {
+            return size == 0 ? 0 : removedThrough[size - 1] * 1000 / sampleRate;
+        }
+
+        /**
+         * Translate a trimmed-stream offset to original time. A start offset that lands exactly on
+         * a cut belongs to the speech after the gap; an end offset belongs to the speech before it.
+         */
+        public int toOriginalMillis(int trimmedMs, boolean isEnd) {
+            long sample = (long) trimmedMs * sampleRate / 1000;
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                boolean before = isEnd ? trimmedAt[mid] < sample : trimmedAt[mid] <= sample;
+                if (before) lo = mid + 1;
+                else hi = mid;
+            }
+            long original = sample + (lo == 0 ? 0 : removedThrough[lo - 1]);
+            return (int) (original * 1000 / sampleRate);
+        }
+
+        public TranscriptionResult toOriginalTime(TranscriptionResult result) {
+            if (size == 0) return result;
+            List<TranscriptionResult.Segment> segments = new ArrayList<>(result.getSegments().size());
+            for (TranscriptionResult.Segment s : result.getSegments()) {
+                segments.add(new TranscriptionResult.Segment(s.participant(),
+                        toOriginalMillis(s.startTimeOffset(), false),
+                        toOriginalMillis(s.endTimeOffset(), true),
+                        s.phrase(), s.score()));
+            }
+            return new TranscriptionResult(result.getInteractionIdentifier(), segments);
+        }
+    }
+}
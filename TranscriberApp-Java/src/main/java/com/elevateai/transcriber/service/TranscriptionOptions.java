@@ -0,0 +1,69 @@
+package com.elevateai.transcriber.service;
+
+/**
+ * Per-request settings for {@link ElevateAiTranscriber#transcribeFile(String, String,
+ * java.util.function.Consumer, TranscriptionOptions)}.
+ */
+public class TranscriptionOptions {
+    /** {@link #sampleRate(int)} value that follows the source file's rate, capped at 16 kHz. */
+    public static final int AUTO_SAMPLE_RATE = 0;
+
+    private String languageTag = "en";
+    private int sampleRate = AUTO_SAMPLE_RATE;
+    private AudioCodec codec = AudioCodec.PCM;
+    private SilenceTrimmer.Options silenceTrim;
+    private CancellationToken cancellation = new CancellationToken();
+
+    public String getLanguageTag() {
+        return languageTag;
+    }
+
+    public TranscriptionOptions languageTag(String languageTag) {
+        this.languageTag = languageTag;
+        return this;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Rate the audio is resampled to before streaming. The default, {@link #AUTO_SAMPLE_RATE},
+     * picks whichever of 8 kHz and 16 kHz is nearer the source rate, so 8 kHz telephony audio
+     * is not upsampled and anything else is sent at one of the two rates ElevateAI takes.
+     */
+    public TranscriptionOptions sampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    public AudioCodec getCodec() {
+        return codec;
+    }
+
+    /** Wire format sent upstream. Defaults to {@link AudioCodec#PCM}. */
+    public TranscriptionOptions codec(AudioCodec codec) {
+        this.codec = codec;
+        return this;
+    }
+
+    /** Silence trimming settings, or {@code null} when trimming is disabled (the default). */
+    public SilenceTrimmer.Options getSilenceTrim() {
+        return silenceTrim;
+    }
+
+    public TranscriptionOptions silenceTrim(SilenceTrimmer.Options silenceTrim) {
+        this.silenceTrim = silenceTrim;
+        return this;
+    }
+
+    public CancellationToken getCancellation() {
+        return cancellation;
+    }
+
+    /** Token that aborts the transcription when cancelled. Defaults to one nobody cancels. */
+    public TranscriptionOptions cancellation(CancellationToken cancellation) {
+        this.cancellation = cancellation;
+        return this;
+    }
+}
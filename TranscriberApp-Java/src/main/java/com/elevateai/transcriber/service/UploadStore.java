@@ -0,0 +1,268 @@
+package com.elevateai.transcriber.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Uploaded audio files on local disk, with a total-size quota and a TTL.
+ *
+ * <p>Files are named {@code elevateai_<uuid><ext>} inside the store directory. The index is
+ * kept in least-recently-used order: when a new upload would exceed the quota, the oldest
+ * files not currently being transcribed are evicted. A background sweep removes files idle
+ * for longer than the TTL, and the index is rebuilt from the directory at startup so files
+ * left by a previous run are still accounted for.</p>
+ *
+ * <p>Configuration from the environment ({@link #fromEnvironment()}):</p>
+ * <ul>
+ *   <li>{@code ELEVATEAI_UPLOAD_DIR}: default {@code <java.io.tmpdir>/elevateai-uploads}</li>
+ *   <li>{@code ELEVATEAI_UPLOAD_QUOTA_MB}: default 2048</li>
+ *   <li>{@code ELEVATEAI_UPLOAD_TTL_MINUTES}: default 60</li>
+ * </ul>
+ */
+public class UploadStore implements Closeable {
+    private static final String PREFIX = "elevateai_";
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final Pattern FILE_ID = Pattern.compile("[0-9a-f\\-]{36}(\\.[A-Za-z0-9]{1,10})?");
+    private static final Pattern EXTENSION = Pattern.compile("\\.[A-Za-z0-9]{1,10}");
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final long RESERVE_STEP = 4L * 1024 * 1024;
+
+    private final Path directory;
+    private final long quotaBytes;
+    private final Duration ttl;
+
+    // Access-ordered: iteration starts at the least recently used file
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final ScheduledExecutorService sweeper;
+
+    private static final class Entry {
+        final Path path;
+        final long size;
+        long lastAccess;
+        int inUse;
+
+        Entry(Path path, long size, long lastAccess) {
+            this.path = path;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    public UploadStore(Path directory, long quotaBytes, Duration ttl) throws IOException {
+        this.directory = directory;
+        this.quotaBytes = quotaBytes;
+        this.ttl = ttl;
+        Files.createDirectories(directory);
+        rebuildIndex();
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "upload-store-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, Math.min(ttl.toSeconds(), 60));
+        sweeper.scheduleAtFixedRate(this::sweepExpired, period, period, TimeUnit.SECONDS);
+    }
+
+    public static UploadStore fromEnvironment() throws IOException {
+        String dir = System.getenv("ELEVATEAI_UPLOAD_DIR");
+        Path directory = dir != null ? Path.of(dir)
+                : Path.of(System.getProperty("java.io.tmpdir"), "elevateai-uploads");
+        long quotaMb = Long.parseLong(System.getenv().getOrDefault("ELEVATEAI_UPLOAD_QUOTA_MB", "2048"));
+        long ttlMinutes = Long.parseLong(System.getenv().getOrDefault("ELEVATEAI_UPLOAD_TTL_MINUTES", "60"));
+        return new UploadStore(directory, quotaMb * 1024 * 1024, Duration.ofMinutes(ttlMinutes));
+    }
+
+    /**
+     * Store an upload streamed from {@code in}. Quota is reserved in steps as the data arrives,
+     * evicting least-recently-used files if needed, and the unused part of the last step is
+     * given back at the end.
+     *
+     * @param extension original file extension including the dot; dropped if it isn't plain alphanumerics
+     * @return the new file id
+     * @throws IOException if the quota can't be met even after eviction, or reading or writing fails
+     */
+    public String put(InputStream in, String extension) throws IOException {
+        String fileId = newFileId(extension);
+        Path target = directory.resolve(PREFIX + fileId);
+        Path partial = directory.resolve(PREFIX + fileId + PARTIAL_SUFFIX);
+
+        long reserved = 0;
+        long written = 0;
+        try {
+            try (OutputStream os = Files.newOutputStream(partial)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    if (written + n > reserved) {
+                        long step = Math.max(RESERVE_STEP, written + n - reserved);
+                        reserve(step);
+                        reserved += step;
+                    }
+                    os.write(buffer, 0, n);
+                    written += n;
+                }
+            }
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(partial);
+            synchronized (this) {
+                totalBytes -= reserved;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            totalBytes -= reserved - written;
+            index.put(fileId, new Entry(target, written, System.currentTimeMillis()));
+        }
+        return fileId;
+    }
+
+    /**
+     * A fresh {@code <uuid><ext>} id. The extension is kept for ffmpeg's format detection but
+     * dropped unless it is a dot followed by a few alphanumerics.
+     */
+    public static String newFileId(String extension) {
+        String ext = extension != null && EXTENSION.matcher(extension).matches() ? extension : "";
+        return UUID.randomUUID() + ext;
+    }
+
+    /** Whether {@code fileId} has the shape produced by {@link #newFileId}, so it is safe in a path. */
+    public static boolean isValidFileId(String fileId) {
+        return fileId != null && FILE_ID.matcher(fileId).matches();
+    }
+
+    /**
+     * Look up a file and pin it so it is not evicted or expired until {@link #release}.
+     *
+     * @return the file's path, or {@code null} if the id is unknown or malformed
+     */
+    public synchronized Path acquire(String fileId) {
+        if (!isValidFileId(fileId)) return null;
+        Entry entry = index.get(fileId);
+        if (entry == null) return null;
+        entry.inUse++;
+        entry.lastAccess = System.currentTimeMillis();
+        return entry.path;
+    }
+
+    /** Unpin a file returned by {@link #acquire}, deleting it if {@code delete} and nobody else holds it. */
+    public void release(String fileId, boolean delete) {
+        Path toDelete = null;
+        synchronized (this) {
+            Entry entry = index.get(fileId);
+            if (entry == null) return;
+            entry.inUse = Math.max(0, entry.inUse - 1);
+            entry.lastAccess = System.currentTimeMillis();
+            if (delete && entry.inUse == 0) {
+                index.remove(fileId);
+                totalBytes -= entry.size;
+                toDelete = entry.path;
+            }
+        }
+        if (toDelete != null) deleteQuietly(toDelete);
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    public long quotaBytes() {
+        return quotaBytes;
+    }
+
+    public Duration ttl() {
+        return ttl;
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    private void reserve(long length) throws IOException {
+        List<Path> evicted = new ArrayList<>();
+        try {
+            synchronized (this) {
+                Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator();
+                while (totalBytes + length > quotaBytes && it.hasNext()) {
+                    Entry entry = it.next().getValue();
+                    if (entry.inUse > 0) continue;
+                    it.remove();
+                    totalBytes -= entry.size;
+                    evicted.add(entry.path);
+                }
+                if (totalBytes + length > quotaBytes) {
+                    throw new IOException("Upload store quota exceeded (" + quotaBytes / (1024 * 1024) + " MB)");
+                }
+                totalBytes += length;
+            }
+        } finally {
+            evicted.forEach(UploadStore::deleteQuietly);
+        }
+    }
+
+    private void sweepExpired() {
+        long cutoff = System.currentTimeMillis() - ttl.toMillis();
+        List<Path> expired = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> it = index.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.inUse == 0 && entry.lastAccess < cutoff) {
+                    it.remove();
+                    totalBytes -= entry.size;
+                    expired.add(entry.path);
+                }
+            }
+        }
+        expired.forEach(UploadStore::deleteQuietly);
+    }
+
+    private void rebuildIndex() throws IOException {
+        List<Entry> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*")) {
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(PARTIAL_SUFFIX)) {
+                    deleteQuietly(file); // interrupted write from a previous run
+                    continue;
+                }
+                found.add(new Entry(file, Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+            }
+        }
+        found.sort(Comparator.comparingLong(e -> e.lastAccess));
+        synchronized (this) {
+            for (Entry entry : found) {
+                index.put(entry.path.getFileName().toString().substring(PREFIX.length()), entry);
+                totalBytes += entry.size;
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Picked up again by the next startup scan
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.elevateai.transcriber;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21+ request executor: one virtual thread per request. Packaged under
+ * {@code META-INF/versions/21} of the multi-release jar.
+ */
+public final class ServerExecutors {
+    private ServerExecutors() {
+    }
+
+    public static ExecutorService newRequestExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
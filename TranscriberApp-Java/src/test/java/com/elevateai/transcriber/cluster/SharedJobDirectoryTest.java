@@ -0,0 +1,254 @@
+package com.elevateai.transcriber.cluster;
+
+import com.elevateai.transcriber.service.TranscriptionOptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SharedJobDirectoryTest {
+    private static final Duration LEASE_TTL = Duration.ofSeconds(30);
+    private static final String TOKEN = "secret-token";
+
+    @TempDir
+    Path root;
+
+    @Test
+    void tokenIsKeptOutOfTheRequestAndDeletedOnClaim() throws IOException {
+        SharedJobDirectory jobs = directory(null);
+        String jobId = submittedJob(jobs);
+        Path dir = root.resolve("jobs").resolve(jobId);
+
+        assertFalse(Files.readString(dir.resolve("request.json")).contains(TOKEN));
+        if (Files.getFileStore(dir).supportsFileAttributeView("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(dir.resolve("token"))));
+        }
+        assertTrue(jobs.isSubmittedWith(jobId, TOKEN));
+        assertFalse(jobs.isSubmittedWith(jobId, "other-token"));
+
+        assertNotNull(jobs.tryClaim(jobId, "node-a"));
+        assertEquals(TOKEN, jobs.takeToken(jobId));
+        assertFalse(Files.exists(dir.resolve("token")));
+        assertThrows(IOException.class, () -> jobs.takeToken(jobId));
+    }
+
+    @Test
+    void tokenIsEncryptedWithClusterKeyAndKeptUntilFinish() throws IOException {
+        byte[] key = new byte[32];
+        SharedJobDirectory jobs = directory(ClusterKey.parse(Base64.getEncoder().encodeToString(key)));
+        String jobId = submittedJob(jobs);
+        Path token = root.resolve("jobs").resolve(jobId).resolve("token");
+
+        assertFalse(new String(Files.readAllBytes(token), StandardCharsets.ISO_8859_1).contains(TOKEN));
+        assertEquals(TOKEN, jobs.takeToken(jobId));
+        assertEquals(TOKEN, jobs.takeToken(jobId));
+
+        jobs.finish(jobId, false);
+        assertFalse(Files.exists(token));
+    }
+
+    @Test
+    void sealedTokenDoesNotOpenUnderAnotherJob() throws IOException {
+        ClusterKey key = ClusterKey.parse(Base64.getEncoder().encodeToString(new byte[16]));
+        byte[] sealed = key.seal("job-a", TOKEN);
+
+        assertEquals(TOKEN, key.open("job-a", sealed));
+        assertThrows(IOException.class, () -> key.open("job-b", sealed));
+    }
+
+    @Test
+    void liveLeaseBlocksClaimAndExpiredLeaseIsStolen() throws IOException {
+        SharedJobDirectory jobs = directory(null);
+        String jobId = submittedJob(jobs);
+        assertEquals(List.of(jobId), jobs.findClaimable());
+
+        SharedJobDirectory.Lease first = jobs.tryClaim(jobId, "node-a");
+        assertNotNull(first);
+        assertNull(jobs.tryClaim(jobId, "node-b"));
+        assertTrue(jobs.findClaimable().isEmpty());
+        assertTrue(jobs.heartbeat(first));
+
+        expire(jobId, first);
+        assertEquals(List.of(jobId), jobs.findClaimable());
+        SharedJobDirectory.Lease second = jobs.tryClaim(jobId, "node-b");
+        assertNotNull(second);
+        assertEquals(first.generation() + 1, second.generation());
+
+        // The stalled owner finds out at its next heartbeat, and the steal left the new lease alone
+        assertFalse(jobs.heartbeat(first));
+        assertTrue(jobs.heartbeat(second));
+        assertNull(jobs.tryClaim(jobId, "node-a"));
+    }
+
+    @Test
+    void stealingTheSameGenerationTwiceFails() throws IOException {
+        SharedJobDirectory jobs = directory(null);
+        String jobId = submittedJob(jobs);
+        SharedJobDirectory.Lease first = jobs.tryClaim(jobId, "node-a");
+        expire(jobId, first);
+
+        // node-c saw the expired lease.0 before node-b created lease.1; its attempt at lease.1 must fail
+        assertNotNull(jobs.tryClaim(jobId, "node-b"));
+        Files.delete(root.resolve("jobs").resolve(jobId).resolve("lease.0"));
+        assertNull(jobs.tryClaim(jobId, "node-c"));
+    }
+
+    @Test
+    void finishedJobIsNotClaimable() throws IOException {
+        SharedJobDirectory jobs = directory(null);
+        String jobId = submittedJob(jobs);
+        SharedJobDirectory.Lease lease = jobs.tryClaim(jobId, "node-a");
+
+        jobs.finish(jobId, false);
+
+        assertTrue(jobs.findClaimable().isEmpty());
+        assertNull(jobs.tryClaim(jobId, "node-b"));
+        assertFalse(jobs.heartbeat(lease));
+    }
+
+    @Test
+    void secondSubmitIsRejected() throws IOException {
+        SharedJobDirectory jobs = directory(null);
+        String jobId = submittedJob(jobs);
+
+        assertEquals(SharedJobDirectory.SubmitResult.ALREADY_SUBMITTED,
+                jobs.submit(jobId, TOKEN, new TranscriptionOptions()));
+        assertEquals(SharedJobDirectory.SubmitResult.UNKNOWN_JOB,
+                jobs.submit("00000000-0000-0000-0000-000000000000", TOKEN, new TranscriptionOptions()));
+    }
+
+    @Test
+    void failedJobKeepsItsAudioAndCanBeSubmittedAgain() throws IOException {
+        SharedJobDirectory jobs = directory(null);
+        String jobId = submittedJob(jobs);
+        jobs.tryClaim(jobId, "node-a");
+        jobs.takeToken(jobId);
+        jobs.append(jobId, new JobEvent("done", "error"));
+        jobs.finish(jobId, true);
+        assertTrue(Files.exists(jobs.audioFile(jobId)));
+
+        assertEquals(SharedJobDirectory.SubmitResult.SUBMITTED,
+                jobs.submit(jobId, "corrected-token", new TranscriptionOptions()));
+
+        assertTrue(jobs.isSubmittedWith(jobId, "corrected-token"));
+        assertEquals(List.of(jobId), jobs.findClaimable());
+        SharedJobDirectory.Lease lease = jobs.tryClaim(jobId, "node-b");
+        assertEquals(0, lease.generation());
+        assertEquals("corrected-token", jobs.takeToken(jobId));
+        try (SharedJobDirectory.EventTail tail = jobs.tail(jobId, 0)) {
+            assertTrue(tail.poll().isEmpty());
+            assertFalse(tail.isFinished());
+        }
+    }
+
+    @Test
+    void completedJobIsNotSubmittedAgain() throws IOException {
+        SharedJobDirectory jobs = directory(null);
+        String jobId = submittedJob(jobs);
+        jobs.tryClaim(jobId, "node-a");
+        jobs.finish(jobId, false);
+
+        assertEquals(SharedJobDirectory.SubmitResult.ALREADY_SUBMITTED,
+                jobs.submit(jobId, TOKEN, new TranscriptionOptions()));
+        assertTrue(jobs.findClaimable().isEmpty());
+    }
+
+    @Test
+    void uploadOverQuotaIsRejectedAndRemoved() throws IOException {
+        SharedJobDirectory jobs = new SharedJobDirectory(root, LEASE_TTL, 1024 * 1024, Duration.ofHours(1), null);
+
+        IOException e = assertThrows(IOException.class,
+                () -> jobs.createJob(new ByteArrayInputStream(new byte[2 * 1024 * 1024]), ".wav"));
+
+        assertTrue(e.getMessage().contains("quota"));
+        try (var dirs = Files.list(root.resolve("jobs"))) {
+            assertEquals(0, dirs.count());
+        }
+    }
+
+    @Test
+    void tailResumesAfterLastEventIdAndEndsOnceDone() throws IOException {
+        SharedJobDirectory jobs = directory(null);
+        String jobId = submittedJob(jobs);
+        jobs.append(jobId, new JobEvent(null, "one"));
+        jobs.append(jobId, new JobEvent(null, "two"));
+
+        try (SharedJobDirectory.EventTail tail = jobs.tail(jobId, 1)) {
+            List<SharedJobDirectory.EventTail.Entry> events = tail.poll();
+            assertEquals(1, events.size());
+            assertEquals(2, events.get(0).id());
+            assertEquals("two", events.get(0).event().data());
+            assertFalse(tail.isFinished());
+
+            jobs.append(jobId, new JobEvent("done", "complete"));
+            jobs.finish(jobId, false);
+            events = tail.poll();
+            assertEquals(3, events.get(0).id());
+            assertTrue(events.get(0).event().isDone());
+            assertTrue(tail.isFinished());
+        }
+    }
+
+    @Test
+    void garbledLineIsSkipped() throws IOException {
+        SharedJobDirectory jobs = directory(null);
+        String jobId = submittedJob(jobs);
+        jobs.append(jobId, new JobEvent(null, "one"));
+        Files.writeString(root.resolve("jobs").resolve(jobId).resolve("events.log"), "{\"event\":nu{\"da\n",
+                java.nio.file.StandardOpenOption.APPEND);
+        jobs.append(jobId, new JobEvent(null, "three"));
+
+        try (SharedJobDirectory.EventTail tail = jobs.tail(jobId, 0)) {
+            List<SharedJobDirectory.EventTail.Entry> events = tail.poll();
+            assertArrayEquals(new long[]{1, 3}, events.stream().mapToLong(SharedJobDirectory.EventTail.Entry::id).toArray());
+        }
+    }
+
+    @Test
+    void jobIsUnwatchedOnceNoTailHasPolledForALeaseTtl() throws IOException {
+        SharedJobDirectory jobs = directory(null);
+        String jobId = submittedJob(jobs);
+        Path watched = root.resolve("jobs").resolve(jobId).resolve("watched");
+        assertFalse(jobs.isUnwatched(jobId));
+
+        Files.setLastModifiedTime(watched, FileTime.fromMillis(System.currentTimeMillis() - 2 * LEASE_TTL.toMillis()));
+        assertTrue(jobs.isUnwatched(jobId));
+
+        try (SharedJobDirectory.EventTail tail = jobs.tail(jobId, 0)) {
+            tail.poll();
+        }
+        assertFalse(jobs.isUnwatched(jobId));
+    }
+
+    private SharedJobDirectory directory(ClusterKey key) throws IOException {
+        return new SharedJobDirectory(root, LEASE_TTL, 64L * 1024 * 1024, Duration.ofHours(1), key);
+    }
+
+    private String submittedJob(SharedJobDirectory jobs) throws IOException {
+        String jobId = jobs.createJob(new ByteArrayInputStream(new byte[1000]), ".wav");
+        assertEquals(SharedJobDirectory.SubmitResult.SUBMITTED, jobs.submit(jobId, TOKEN, new TranscriptionOptions()));
+        return jobId;
+    }
+
+    private void expire(String jobId, SharedJobDirectory.Lease lease) throws IOException {
+        Path file = root.resolve("jobs").resolve(jobId).resolve("lease." + lease.generation());
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 2 * LEASE_TTL.toMillis()));
+    }
+}
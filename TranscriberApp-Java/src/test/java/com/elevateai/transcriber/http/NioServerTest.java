@@ -0,0 +1,297 @@
+package com.elevateai.transcriber.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class NioServerTest {
+    private static final int MAX_HEADER_BYTES = 1024;
+    private static final long MAX_BODY_BYTES = 1000;
+    private static final int MAX_DESCRIPTORS = 100_000;
+
+    private ExecutorService executor;
+    private NioServer server;
+    private final CompletableFuture<Exchange> flooding = new CompletableFuture<>();
+    private final CompletableFuture<IOException> floodFailure = new CompletableFuture<>();
+
+    @BeforeEach
+    void start() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        ServerConfig config = new ServerConfig("nio", 50, 100, Duration.ofSeconds(10), MAX_HEADER_BYTES, MAX_BODY_BYTES);
+        server = new NioServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), config, executor);
+        server.createContext("/hello", exchange -> respond(exchange, 200, "hello"));
+        server.createContext("/echo", exchange -> {
+            byte[] body;
+            try {
+                body = exchange.requestBody().readAllBytes();
+            } catch (IOException e) {
+                respond(exchange, 400, "incomplete");
+                return;
+            }
+            respond(exchange, 200, body.length + ":" + new String(body, StandardCharsets.UTF_8));
+        });
+        server.createContext("/stream", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream os = exchange.responseBody();
+            os.write("ab".getBytes(StandardCharsets.UTF_8));
+            os.flush();
+            os.write("cde".getBytes(StandardCharsets.UTF_8));
+            exchange.close();
+        });
+        server.createContext("/flood", exchange -> {
+            // Writes until the connection fails, like an SSE writer facing a client that stopped reading
+            exchange.sendResponseHeaders(200, 0);
+            flooding.complete(exchange);
+            byte[] chunk = new byte[64 * 1024];
+            try {
+                while (true) exchange.responseBody().write(chunk);
+            } catch (IOException e) {
+                floodFailure.complete(e);
+            }
+            exchange.close();
+        });
+        server.createContext("/not-modified", exchange -> {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "late");
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void fixedLengthResponse() throws IOException {
+        assertEquals("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 5\r\nContent-Type: text/plain\r\n\r\nhello",
+                exchange("GET /hello HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n"));
+    }
+
+    @Test
+    void headSendsHeadersWithoutBody() throws IOException {
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 5\r\nContent-Type: text/plain\r\n\r\n"
+                        + "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 5\r\nContent-Type: text/plain\r\n\r\nhello",
+                exchange("HEAD /hello HTTP/1.1\r\nHost: x\r\n\r\n"
+                        + "GET /hello HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n"));
+    }
+
+    @Test
+    void notModifiedHasNoBodyOrLength() throws IOException {
+        assertEquals("HTTP/1.1 304 Not Modified\r\n\r\n"
+                        + "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 5\r\nContent-Type: text/plain\r\n\r\nhello",
+                exchange("GET /not-modified HTTP/1.1\r\nHost: x\r\n\r\n"
+                        + "GET /hello HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n"));
+    }
+
+    @Test
+    void chunkedResponseEndsWithTerminator() throws IOException {
+        assertEquals("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n2\r\nab\r\n3\r\ncde\r\n0\r\n\r\n"
+                        + "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 5\r\nContent-Type: text/plain\r\n\r\nhello",
+                exchange("GET /stream HTTP/1.1\r\nHost: x\r\n\r\n"
+                        + "GET /hello HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n"));
+    }
+
+    @Test
+    void pipelinedRequestsAreAnsweredInOrder() throws IOException {
+        assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 4\r\nContent-Type: text/plain\r\n\r\nlate"
+                        + "HTTP/1.1 200 OK\r\nContent-Length: 7\r\nContent-Type: text/plain\r\n\r\n5:hello"
+                        + "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 5\r\nContent-Type: text/plain\r\n\r\nhello",
+                exchange("GET /slow HTTP/1.1\r\nHost: x\r\n\r\n"
+                        + "POST /echo HTTP/1.1\r\nHost: x\r\nContent-Length: 5\r\n\r\nhello"
+                        + "GET /hello HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n"));
+    }
+
+    @Test
+    void bodyIsReadUpToContentLength() throws IOException {
+        try (Socket socket = connect()) {
+            OutputStream out = socket.getOutputStream();
+            out.write(bytes("POST /echo HTTP/1.1\r\nHost: x\r\nConnection: close\r\nContent-Length: 11\r\n\r\nhello"));
+            out.flush();
+            sleep(100);
+            out.write(bytes(" world"));
+            out.flush();
+            assertTrue(readAll(socket.getInputStream()).endsWith("\r\n\r\n11:hello world"));
+        }
+    }
+
+    @Test
+    void oversizedHeadIsRejectedWith431() throws IOException {
+        String big = "a".repeat(2 * MAX_HEADER_BYTES);
+        assertStatus(431, exchange("GET /hello HTTP/1.1\r\nX-Big: " + big + "\r\n\r\n"));
+        // Still too large when the end of the head hasn't arrived yet
+        assertStatus(431, exchange("GET /hello HTTP/1.1\r\nX-Big: " + big));
+    }
+
+    @Test
+    void bodyLimits() throws IOException {
+        assertStatus(413, exchange("POST /echo HTTP/1.1\r\nHost: x\r\nContent-Length: " + (MAX_BODY_BYTES + 1) + "\r\n\r\n"));
+        assertStatus(411, exchange("POST /echo HTTP/1.1\r\nHost: x\r\nTransfer-Encoding: chunked\r\n\r\n"));
+        assertStatus(400, exchange("POST /echo HTTP/1.1\r\nHost: x\r\nContent-Length: ten\r\n\r\n"));
+        assertStatus(400, exchange("POST /echo HTTP/1.1\r\nHost: x\r\nContent-Length: 1\r\nContent-Length: 2\r\n\r\nab"));
+    }
+
+    @Test
+    void halfCloseStillGetsTheResponse() throws IOException {
+        try (Socket socket = connect()) {
+            socket.getOutputStream().write(bytes("GET /slow HTTP/1.1\r\nHost: x\r\n\r\nGET /hello HTTP/1.1\r\nHost: x\r\n\r\n"));
+            socket.shutdownOutput();
+            String response = readAll(socket.getInputStream());
+            assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 4\r\nContent-Type: text/plain\r\n\r\nlate"
+                    + "HTTP/1.1 200 OK\r\nContent-Length: 5\r\nContent-Type: text/plain\r\n\r\nhello", response);
+        }
+    }
+
+    @Test
+    void halfCloseMidBodyFailsTheRead() throws IOException {
+        try (Socket socket = connect()) {
+            socket.getOutputStream().write(bytes("POST /echo HTTP/1.1\r\nHost: x\r\nContent-Length: 10\r\n\r\nhello"));
+            socket.shutdownOutput();
+            String response = readAll(socket.getInputStream());
+            assertStatus(400, response);
+            assertTrue(response.endsWith("incomplete"));
+        }
+    }
+
+    @Test
+    void halfCloseBetweenRequestsCloses() throws IOException {
+        try (Socket socket = connect()) {
+            socket.shutdownOutput();
+            assertEquals("", readAll(socket.getInputStream()));
+        }
+    }
+
+    @Test
+    void abortFromAnotherThreadFailsABlockedWriter() throws Exception {
+        try (Socket socket = connect()) {
+            socket.getOutputStream().write(bytes("GET /flood HTTP/1.1\r\nHost: x\r\n\r\n"));
+            Exchange exchange = flooding.get(5, TimeUnit.SECONDS);
+            sleep(200); // let the writer fill the socket buffers and block
+
+            exchange.abort();
+
+            assertNotNull(floodFailure.get(5, TimeUnit.SECONDS));
+        }
+        assertStatus(200, exchange("GET /hello HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n"));
+    }
+
+    @Test
+    void serverKeepsRunningWhenAcceptFails() throws IOException {
+        // Load everything the exchange needs while descriptors are still available
+        assertStatus(200, exchange("GET /hello HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n"));
+
+        Path file = Files.createTempFile("nio-server-test", null);
+        List<FileChannel> held = new ArrayList<>();
+        try (Socket socket = exhaustDescriptorsExceptOneSocket(file, held)) {
+            socket.getOutputStream().write(bytes("GET /hello HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n"));
+            socket.setSoTimeout(300);
+            // The server can't accept the connection while every descriptor is taken
+            assertThrows(SocketTimeoutException.class, () -> socket.getInputStream().read());
+
+            release(held);
+            socket.setSoTimeout(5000);
+            assertStatus(200, readAll(socket.getInputStream()));
+        } finally {
+            release(held);
+            Files.deleteIfExists(file);
+        }
+        assertStatus(200, exchange("GET /hello HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n"));
+    }
+
+    /** Open {@code file} until the process runs out of descriptors, then use the last free one for a client socket. */
+    private Socket exhaustDescriptorsExceptOneSocket(Path file, List<FileChannel> held) throws IOException {
+        try {
+            while (held.size() < MAX_DESCRIPTORS) held.add(FileChannel.open(file));
+        } catch (IOException e) {
+            held.remove(held.size() - 1).close();
+            return connect();
+        }
+        release(held);
+        assumeTrue(false, "descriptor limit too high to exhaust");
+        return null;
+    }
+
+    private static void release(List<FileChannel> held) throws IOException {
+        for (FileChannel channel : held) channel.close();
+        held.clear();
+    }
+
+    private static void respond(Exchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.setResponseHeader("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.responseBody().write(body);
+        exchange.close();
+    }
+
+    /** Send {@code request} in one write and return everything the server sends until it closes, minus Date headers. */
+    private String exchange(String request) throws IOException {
+        try (Socket socket = connect()) {
+            socket.getOutputStream().write(bytes(request));
+            return readAll(socket.getInputStream());
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        in.transferTo(received);
+        return received.toString(StandardCharsets.ISO_8859_1).replaceAll("Date: [^\r]*\r\n", "");
+    }
+
+    private static void assertStatus(int status, String response) {
+        assertTrue(response.startsWith("HTTP/1.1 " + status + " "), response);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
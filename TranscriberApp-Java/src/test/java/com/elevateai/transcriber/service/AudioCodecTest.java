@@ -0,0 +1,90 @@
+package com.elevateai.transcriber.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AudioCodecTest {
+
+    // Reference values from the ITU-T G.711 reference encoder (Sun g711.c)
+    private static final int[] SAMPLES = {0, -1, 1000, -1000, 32767, -32768};
+    private static final int[] MULAW = {0xFF, 0x7F, 0xCE, 0x4E, 0x80, 0x00};
+    private static final int[] ALAW = {0xD5, 0x55, 0xFA, 0x7A, 0xAA, 0x2A};
+
+    @Test
+    void mulawKnownValues() {
+        for (int i = 0; i < SAMPLES.length; i++) {
+            assertEquals(MULAW[i], AudioCodec.linearToMulaw(SAMPLES[i]) & 0xFF, "sample " + SAMPLES[i]);
+        }
+    }
+
+    @Test
+    void alawKnownValues() {
+        for (int i = 0; i < SAMPLES.length; i++) {
+            assertEquals(ALAW[i], AudioCodec.linearToAlaw(SAMPLES[i]) & 0xFF, "sample " + SAMPLES[i]);
+        }
+    }
+
+    @Test
+    void encodeInPlaceHalvesLength() {
+        byte[] pcm = littleEndian(SAMPLES);
+
+        assertEquals(SAMPLES.length, AudioCodec.MULAW.encode(pcm, pcm.length));
+
+        byte[] expected = new byte[SAMPLES.length];
+        for (int i = 0; i < expected.length; i++) expected[i] = (byte) MULAW[i];
+        assertArrayEquals(expected, Arrays.copyOf(pcm, SAMPLES.length));
+    }
+
+    @Test
+    void encodeDropsTrailingOddByte() {
+        byte[] pcm = littleEndian(new int[]{1000, -1000});
+
+        assertEquals(1, AudioCodec.ALAW.encode(pcm, 3));
+        assertEquals((byte) 0xFA, pcm[0]);
+    }
+
+    @Test
+    void pcmIsLeftAlone() {
+        byte[] pcm = littleEndian(SAMPLES);
+        byte[] copy = pcm.clone();
+
+        assertEquals(pcm.length, AudioCodec.PCM.encode(pcm, pcm.length));
+        assertArrayEquals(copy, pcm);
+    }
+
+    @Test
+    void parse() {
+        assertSame(AudioCodec.MULAW, AudioCodec.parse("ulaw"));
+        assertSame(AudioCodec.MULAW, AudioCodec.parse(" MuLaw "));
+        assertSame(AudioCodec.ALAW, AudioCodec.parse("ALAW"));
+        assertSame(AudioCodec.PCM, AudioCodec.parse("pcm"));
+        assertThrows(IllegalArgumentException.class, () -> AudioCodec.parse("opus"));
+    }
+
+    @Test
+    void automaticSampleRateSnapsToSupportedRates() {
+        assertEquals(8000, ElevateAiTranscriber.chooseSampleRate(0, 8000));
+        assertEquals(8000, ElevateAiTranscriber.chooseSampleRate(0, 11025));
+        assertEquals(16000, ElevateAiTranscriber.chooseSampleRate(0, 12000));
+        assertEquals(16000, ElevateAiTranscriber.chooseSampleRate(0, 22050));
+        assertEquals(16000, ElevateAiTranscriber.chooseSampleRate(0, 48000));
+        assertEquals(8000, ElevateAiTranscriber.chooseSampleRate(0, 6000));
+        assertEquals(16000, ElevateAiTranscriber.chooseSampleRate(0, 0));
+        assertEquals(44100, ElevateAiTranscriber.chooseSampleRate(44100, 8000));
+    }
+
+    private static byte[] littleEndian(int[] samples) {
+        byte[] pcm = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            pcm[2 * i] = (byte) samples[i];
+            pcm[2 * i + 1] = (byte) (samples[i] >> 8);
+        }
+        return pcm;
+    }
+}
@@ -0,0 +1,141 @@
+package com.elevateai.transcriber.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SilenceTrimmerTest {
+    private static final int RATE = 16000;
+    // Options.DEFAULT keeps 200 ms of each silence, 100 ms on either edge
+    private static final int KEEP_HALF = 1600;
+
+    @Test
+    void allSilentInputIsCompressedToKeptSilence() {
+        byte[] pcm = new Pcm().silence(2 * RATE).bytes();
+
+        SilenceTrimmer.OffsetMap map = SilenceTrimmer.detect(SilenceTrimmer.Options.DEFAULT, RATE, pcm);
+        int length = SilenceTrimmer.compact(pcm, pcm.length, map);
+
+        assertEquals(1, map.cutCount());
+        assertEquals(2 * KEEP_HALF * 2, length);
+        assertEquals(1800, map.removedMillis());
+    }
+
+    @Test
+    void shortSilenceIsKept() {
+        byte[] pcm = new Pcm().tone(RATE, 8000).silence(RATE / 2).tone(RATE, 8000).bytes();
+
+        SilenceTrimmer.OffsetMap map = SilenceTrimmer.detect(SilenceTrimmer.Options.DEFAULT, RATE, pcm);
+
+        assertEquals(0, map.cutCount());
+        assertEquals(pcm.length, SilenceTrimmer.compact(pcm, pcm.length, map));
+    }
+
+    @Test
+    void partialLastFrameIsMeasuredAgainstItsOwnLength() {
+        // 10 samples above the threshold; averaged over a full 160-sample frame they would look silent
+        byte[] pcm = new Pcm().tone(RATE, 8000).silence(RATE).tone(10, 400).bytes();
+        int samples = pcm.length / 2;
+
+        SilenceTrimmer.OffsetMap map = SilenceTrimmer.detect(SilenceTrimmer.Options.DEFAULT, RATE, pcm);
+        int length = SilenceTrimmer.compact(pcm, pcm.length, map);
+
+        assertEquals(1, map.cutCount());
+        int removed = (2 * RATE - KEEP_HALF) - (RATE + KEEP_HALF);
+        assertEquals((samples - removed) * 2, length);
+        byte[] tail = new Pcm().tone(10, 400).bytes();
+        byte[] actualTail = new byte[tail.length];
+        System.arraycopy(pcm, length - tail.length, actualTail, 0, tail.length);
+        assertArrayEquals(tail, actualTail);
+    }
+
+    @Test
+    void quietPartialLastFrameStaysSilent() {
+        byte[] pcm = new Pcm().tone(RATE, 8000).silence(RATE).tone(10, 50).bytes();
+
+        SilenceTrimmer.OffsetMap map = SilenceTrimmer.detect(SilenceTrimmer.Options.DEFAULT, RATE, pcm);
+
+        assertEquals(1, map.cutCount());
+        // The run reaches the end of the input, so the kept edge is measured from the last sample
+        int removed = (pcm.length / 2 - KEEP_HALF) - (RATE + KEEP_HALF);
+        assertEquals(pcm.length - removed * 2, SilenceTrimmer.compact(pcm, pcm.length, map));
+    }
+
+    @Test
+    void channelsAreCutOnlyWhereAllAreSilent() {
+        byte[] left = new Pcm().tone(RATE, 8000).silence(2 * RATE).tone(RATE, 8000).bytes();
+        byte[] right = new Pcm().silence(RATE).tone(3 * RATE, 8000).bytes();
+
+        SilenceTrimmer.OffsetMap map = SilenceTrimmer.detect(SilenceTrimmer.Options.DEFAULT, RATE, left, right);
+
+        assertEquals(0, map.cutCount());
+    }
+
+    @Test
+    void offsetsMapBackToOriginalTime() {
+        // 1 s speech, 2 s silence, 1 s speech, 1 s silence, 1 s speech
+        byte[] pcm = new Pcm().tone(RATE, 8000).silence(2 * RATE).tone(RATE, 8000)
+                .silence(RATE).tone(RATE, 8000).bytes();
+
+        SilenceTrimmer.OffsetMap map = SilenceTrimmer.detect(SilenceTrimmer.Options.DEFAULT, RATE, pcm);
+
+        assertEquals(2, map.cutCount());
+        assertEquals(1800 + 800, map.removedMillis());
+        // First cut removes [1.1 s, 2.9 s), second [4.1 s, 4.9 s) of the original
+        assertEquals(500, map.toOriginalMillis(500, false));
+        assertEquals(2900, map.toOriginalMillis(1100, false));
+        assertEquals(1100, map.toOriginalMillis(1100, true));
+        assertEquals(3500, map.toOriginalMillis(1700, true));
+        assertEquals(2300 + 2600, map.toOriginalMillis(2300, false));
+        assertEquals(2300 + 1800, map.toOriginalMillis(2300, true));
+        assertEquals(6000, map.toOriginalMillis(3400, true));
+
+        TranscriptionResult trimmed = new TranscriptionResult("id", List.of(
+                new TranscriptionResult.Segment("participantOne", 200, 1100, "hello", 0.9),
+                new TranscriptionResult.Segment("participantOne", 1100, 2300, "world", 0.9)));
+        List<TranscriptionResult.Segment> original = map.toOriginalTime(trimmed).getSegments();
+        assertEquals(200, original.get(0).startTimeOffset());
+        assertEquals(1100, original.get(0).endTimeOffset());
+        assertEquals(2900, original.get(1).startTimeOffset());
+        assertEquals(4100, original.get(1).endTimeOffset());
+    }
+
+    @Test
+    void mapWithoutCutsLeavesResultUntouched() {
+        byte[] pcm = new Pcm().tone(RATE, 8000).bytes();
+        SilenceTrimmer.OffsetMap map = SilenceTrimmer.detect(SilenceTrimmer.Options.DEFAULT, RATE, pcm);
+        TranscriptionResult result = new TranscriptionResult("id", List.of());
+
+        assertEquals(0, map.removedMillis());
+        assertEquals(1234, map.toOriginalMillis(1234, false));
+        assertSame(result, map.toOriginalTime(result));
+    }
+
+    /** 16-bit little-endian mono PCM builder. */
+    private static final class Pcm {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Pcm silence(int samples) {
+            return tone(samples, 0);
+        }
+
+        /** Square wave of the given amplitude, so every sample has the same energy. */
+        Pcm tone(int samples, int amplitude) {
+            for (int i = 0; i < samples; i++) {
+                int sample = (i & 1) == 0 ? amplitude : -amplitude;
+                out.write(sample & 0xFF);
+                out.write((sample >> 8) & 0xFF);
+            }
+            return this;
+        }
+
+        byte[] bytes() {
+            return out.toByteArray();
+        }
+    }
+}